@@ -33,7 +33,7 @@ public class Attributes {
   }
 
   public Attributes (Attributes a) {
-    ht = new Hashtable<Object, String>(a.ht);
+    ht = a.copy();
   }
 
   public void setBoolean (String name, boolean value) {
@@ -79,6 +79,13 @@ public class Attributes {
   }
   
   public Map<Object, String> getAll () {
-    return new Hashtable<Object, String> (ht);
+    return copy();
+  }
+
+  /**
+   * @return new table holding all attributes as strings
+   */
+  Hashtable<Object, String> copy () {
+    return new Hashtable<Object, String>(ht);
   }
 }
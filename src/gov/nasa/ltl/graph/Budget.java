@@ -0,0 +1,105 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+// 
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+// 
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.ltl.graph;
+
+/**
+ * Limits on the time a translation may take and on the size of the
+ * automata it builds. The time limit runs from the moment the budget
+ * is started. Long-running steps call the check methods, which throw a
+ * {@link BudgetExceededException} once a limit has been passed or the
+ * thread which started the budget has been interrupted. That thread is
+ * also checked when the work is done by other threads, e. g. in a
+ * fork-join pool. A limit of 0 means no limit.
+ */
+public final class Budget {
+  /** Budget that is never exceeded and ignores interruption. */
+  public static final Budget UNLIMITED = new Budget (0, 0, 0, null);
+
+  private final long timeoutMillis;
+  private final int maxNodes;
+  private final int maxEdges;
+  /** Value of {@link System#nanoTime()} when time runs out. */
+  private final long deadline;
+  private final Thread owner;
+
+  private Budget (long timeoutMillis, int maxNodes, int maxEdges,
+                  Thread owner) {
+    this.timeoutMillis = timeoutMillis;
+    this.maxNodes = maxNodes;
+    this.maxEdges = maxEdges;
+    this.owner = owner;
+    deadline = System.nanoTime () + timeoutMillis * 1000000L;
+  }
+
+  /**
+   * Starts a budget for the current thread.
+   * @param timeoutMillis wall-clock time allowed, in milliseconds
+   * @param maxNodes number of nodes allowed
+   * @param maxEdges number of edges allowed
+   * @return budget whose time starts running now
+   */
+  public static Budget start (long timeoutMillis, int maxNodes, int maxEdges) {
+    return new Budget (timeoutMillis, maxNodes, maxEdges,
+                       Thread.currentThread ());
+  }
+
+  /**
+   * Checks for interruption and the time limit.
+   * @throws BudgetExceededException
+   */
+  public void check () {
+    if (owner != null && owner.isInterrupted ()) {
+      throw new BudgetExceededException (
+          BudgetExceededException.Reason.INTERRUPTED, "interrupted");
+    }
+    if (timeoutMillis > 0 && System.nanoTime () - deadline > 0) {
+      throw new BudgetExceededException (
+          BudgetExceededException.Reason.TIME,
+          "more than " + timeoutMillis + " ms");
+    }
+  }
+
+  /**
+   * Checks for interruption, the time limit and the node limit.
+   * @param nodes number of nodes built so far
+   * @throws BudgetExceededException
+   */
+  public void checkNodes (int nodes) {
+    check ();
+    if (maxNodes > 0 && nodes > maxNodes) {
+      throw new BudgetExceededException (
+          BudgetExceededException.Reason.NODES,
+          nodes + " nodes, at most " + maxNodes + " allowed");
+    }
+  }
+
+  /**
+   * Checks for interruption, the time limit and the edge limit.
+   * @param edges number of edges built so far
+   * @throws BudgetExceededException
+   */
+  public void checkEdges (int edges) {
+    check ();
+    if (maxEdges > 0 && edges > maxEdges) {
+      throw new BudgetExceededException (
+          BudgetExceededException.Reason.EDGES,
+          edges + " edges, at most " + maxEdges + " allowed");
+    }
+  }
+}
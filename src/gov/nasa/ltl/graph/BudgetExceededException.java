@@ -0,0 +1,39 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+// 
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+// 
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.ltl.graph;
+
+/**
+ * Thrown when a step runs out of its {@link Budget}.
+ */
+@SuppressWarnings("serial")
+public class BudgetExceededException extends RuntimeException {
+  /** Which limit was hit. */
+  public static enum Reason { TIME, NODES, EDGES, INTERRUPTED };
+
+  private final Reason reason;
+
+  public BudgetExceededException (Reason reason, String s) {
+    super("budget exceeded: " + s);
+    this.reason = reason;
+  }
+
+  public Reason getReason () {
+    return reason;
+  }
+}
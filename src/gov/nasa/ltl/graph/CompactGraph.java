@@ -0,0 +1,477 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+// 
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+// 
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.ltl.graph;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Immutable form of a {@link Graph}, for automata which are only read
+ * once they are built, such as cached ones or ones shared by several
+ * threads. No accessor is synchronized, since nothing changes after
+ * construction.
+ *
+ * States are numbered 0 to {@link #getStateCount()} - 1 in the order of
+ * {@link Graph#getNodes()}, and {@link #getId(int)} gives the ID the
+ * node has in the graph. The outgoing edges of a state are numbered
+ * {@link #getFirstEdge(int)} to {@link #getEndEdge(int)} - 1, in their
+ * order in the graph, and their targets are kept in one array. Every
+ * guard is kept once, in a table, and acceptance is kept in bit sets.
+ * Other attributes of nodes and edges are kept as well, so that
+ * {@link #toGraph()} gives back an equal graph.
+ */
+public final class CompactGraph<PropT> {
+  /**
+   * Acceptance of states and edges: "accepting", and the acceptance
+   * sets "acc0", "acc1", ...
+   */
+  static final class Acceptance {
+    final BitSet states;
+    final BitSet edges;
+    final BitSet[] stateSets;
+    final BitSet[] edgeSets;
+
+    Acceptance (BitSet states, BitSet edges, BitSet[] stateSets,
+                BitSet[] edgeSets) {
+      this.states = states;
+      this.edges = edges;
+      this.stateSets = stateSets;
+      this.edgeSets = edgeSets;
+    }
+
+    Acceptance copy () {
+      BitSet[] ss = new BitSet[stateSets.length];
+      BitSet[] es = new BitSet[edgeSets.length];
+      for (int i = 0; i < ss.length; i++) {
+        ss[i] = (BitSet) stateSets[i].clone();
+      }
+      for (int i = 0; i < es.length; i++) {
+        es[i] = (BitSet) edgeSets[i].clone();
+      }
+      return new Acceptance((BitSet) states.clone(), (BitSet) edges.clone(),
+                            ss, es);
+    }
+
+    static boolean get (BitSet[] sets, int set, int i) {
+      return set < sets.length && sets[set].get(i);
+    }
+
+    static void clear (BitSet[] sets, int set, int i) {
+      if (set < sets.length) {
+        sets[set].clear(i);
+      }
+    }
+  }
+
+  private final Attributes attributes;
+  private final int         init;
+  private final int[]       offsets;
+  private final int[]       targets;
+  private final int[]       guardIndices;
+  private final ArrayList<Guard<PropT>> guards;
+  private final String[]    actions;
+  private final Acceptance  acceptance;
+  /** Other attributes by state, or null if no state has any. */
+  private final Attributes[] stateAttributes;
+  /** Other attributes by edge, or null if no edge has any. */
+  private final Attributes[] edgeAttributes;
+
+  /**
+   * Copies a graph; later changes to g do not affect the copy.
+   * @param g
+   */
+  public CompactGraph (Graph<PropT> g) {
+    synchronized (g) {
+      List<Node<PropT>> nodes = g.getNodes();
+      int n = nodes.size();
+      int m = g.getEdgeCount();
+      int[] position = new int[n];
+      TreeMap<Guard<PropT>, Integer> table = new TreeMap<Guard<PropT>, Integer>();
+      ArrayList<Guard<PropT>> guardList = new ArrayList<Guard<PropT>>();
+      ArrayList<BitSet> stateSets = new ArrayList<BitSet>();
+      ArrayList<BitSet> edgeSets = new ArrayList<BitSet>();
+      Attributes[] sa = null;
+      Attributes[] ea = null;
+
+      for (int s = 0; s < n; s++) {
+        position[nodes.get(s).getId()] = s;
+      }
+
+      attributes = new Attributes(g.getAttributes());
+      init = g.getInit() == null ? -1 : position[g.getInit().getId()];
+      offsets = new int[n + 1];
+      targets = new int[m];
+      guardIndices = new int[m];
+      actions = new String[m];
+      BitSet acceptingStates = new BitSet(n);
+      BitSet acceptingEdges = new BitSet(m);
+
+      int e = 0;
+      for (int s = 0; s < n; s++) {
+        Node<PropT> node = nodes.get(s);
+        offsets[s] = e;
+        acceptingStates.set(s, node.isAccepting());
+        addAll(stateSets, node.getAcceptingSets(), s);
+        Attributes a = node.getUntypedAttributes();
+        if (a != null) {
+          if (sa == null) {
+            sa = new Attributes[n];
+          }
+          sa[s] = a;
+        }
+
+        for (Edge<PropT> edge: node.getOutgoingEdges()) {
+          targets[e] = position[edge.getNext().getId()];
+          guardIndices[e] = intern(table, guardList, edge.getGuard());
+          actions[e] = edge.getAction();
+          acceptingEdges.set(e, edge.isAccepting());
+          addAll(edgeSets, edge.getAcceptingSets(), e);
+          a = edge.getUntypedAttributes();
+          if (a != null) {
+            if (ea == null) {
+              ea = new Attributes[m];
+            }
+            ea[e] = a;
+          }
+          e++;
+        }
+      }
+      offsets[n] = e;
+
+      guardList.trimToSize();
+      guards = guardList;
+      acceptance = new Acceptance(acceptingStates, acceptingEdges,
+                                  stateSets.toArray(new BitSet[stateSets.size()]),
+                                  edgeSets.toArray(new BitSet[edgeSets.size()]));
+      stateAttributes = sa;
+      edgeAttributes = ea;
+    }
+  }
+
+  /**
+   * Subgraph of g without some of its states and their edges.
+   * @param g
+   * @param removed states to leave out
+   * @param init state of g to become the initial state, or -1
+   * @param acc acceptance of the states and edges of g to use
+   */
+  CompactGraph (CompactGraph<PropT> g, BitSet removed, int init,
+                Acceptance acc) {
+    int[] position = new int[g.getStateCount()];
+    int n = 0;
+    int m = 0;
+
+    for (int s = 0; s < position.length; s++) {
+      if (!removed.get(s)) {
+        position[s] = n++;
+        for (int e = g.offsets[s]; e < g.offsets[s + 1]; e++) {
+          if (!removed.get(g.targets[e])) {
+            m++;
+          }
+        }
+      }
+    }
+
+    attributes = g.attributes;
+    guards = g.guards;
+    this.init = init < 0 ? -1 : position[init];
+    offsets = new int[n + 1];
+    targets = new int[m];
+    guardIndices = new int[m];
+    actions = new String[m];
+    stateAttributes = g.stateAttributes == null ? null : new Attributes[n];
+    edgeAttributes = g.edgeAttributes == null ? null : new Attributes[m];
+    acceptance = new Acceptance(new BitSet(n), new BitSet(m),
+                                new BitSet[acc.stateSets.length],
+                                new BitSet[acc.edgeSets.length]);
+    for (int i = 0; i < acc.stateSets.length; i++) {
+      acceptance.stateSets[i] = new BitSet(n);
+    }
+    for (int i = 0; i < acc.edgeSets.length; i++) {
+      acceptance.edgeSets[i] = new BitSet(m);
+    }
+
+    int e = 0;
+    for (int s = 0; s < position.length; s++) {
+      if (removed.get(s)) {
+        continue;
+      }
+      int t = position[s];
+      offsets[t] = e;
+      acceptance.states.set(t, acc.states.get(s));
+      for (int i = 0; i < acc.stateSets.length; i++) {
+        acceptance.stateSets[i].set(t, acc.stateSets[i].get(s));
+      }
+      if (stateAttributes != null) {
+        stateAttributes[t] = g.stateAttributes[s];
+      }
+      for (int f = g.offsets[s]; f < g.offsets[s + 1]; f++) {
+        if (removed.get(g.targets[f])) {
+          continue;
+        }
+        targets[e] = position[g.targets[f]];
+        guardIndices[e] = g.guardIndices[f];
+        actions[e] = g.actions[f];
+        acceptance.edges.set(e, acc.edges.get(f));
+        for (int i = 0; i < acc.edgeSets.length; i++) {
+          acceptance.edgeSets[i].set(e, acc.edgeSets[i].get(f));
+        }
+        if (edgeAttributes != null) {
+          edgeAttributes[e] = g.edgeAttributes[f];
+        }
+        e++;
+      }
+    }
+    offsets[n] = e;
+  }
+
+  private static void addAll (ArrayList<BitSet> sets, BitSet in, int i) {
+    for (int k = in.nextSetBit(0); k >= 0; k = in.nextSetBit(k + 1)) {
+      while (sets.size() <= k) {
+        sets.add(new BitSet());
+      }
+      sets.get(k).set(i);
+    }
+  }
+
+  private static <PropT> int intern (TreeMap<Guard<PropT>, Integer> table,
+                                     ArrayList<Guard<PropT>> guardList,
+                                     Guard<PropT> g) {
+    Integer i = table.get(g);
+
+    if (i == null) {
+      Guard<PropT> copy = new Guard<PropT>();
+      copy.addAll(g);
+      i = guardList.size();
+      guardList.add(copy);
+      table.put(copy, i);
+    }
+    return i;
+  }
+
+  /**
+   * @return a new graph equal to the one this was made from
+   */
+  public Graph<PropT> toGraph () {
+    int n = getStateCount();
+    GraphBuilder<PropT> b =
+      new GraphBuilder<PropT>(new Attributes(attributes), n, getEdgeCount());
+
+    for (int s = 0; s < n; s++) {
+      b.addNode(stateAttributes == null ? null : stateAttributes[s]);
+    }
+    for (int s = 0; s < n; s++) {
+      for (int e = offsets[s]; e < offsets[s + 1]; e++) {
+        b.addEdge(s, targets[e], getGuard(e), actions[e],
+                  edgeAttributes == null ? null : edgeAttributes[e]);
+      }
+    }
+    if (init >= 0) {
+      b.setInit(init);
+    }
+    Graph<PropT> g = b.build();
+
+    List<Node<PropT>> nodes = g.getNodes();
+    for (int s = 0; s < n; s++) {
+      Node<PropT> node = nodes.get(s);
+      node.setAccepting(acceptance.states.get(s));
+      for (int k = 0; k < acceptance.stateSets.length; k++) {
+        if (acceptance.stateSets[k].get(s)) {
+          node.setAccepting(k, true);
+        }
+      }
+      List<Edge<PropT>> edges = node.getOutgoingEdges();
+      for (int e = offsets[s]; e < offsets[s + 1]; e++) {
+        Edge<PropT> edge = edges.get(e - offsets[s]);
+        edge.setAccepting(acceptance.edges.get(e));
+        for (int k = 0; k < acceptance.edgeSets.length; k++) {
+          if (acceptance.edgeSets[k].get(e)) {
+            edge.setAccepting(k, true);
+          }
+        }
+      }
+    }
+    return g;
+  }
+
+  public int getStateCount () {
+    return offsets.length - 1;
+  }
+
+  public int getEdgeCount () {
+    return targets.length;
+  }
+
+  /**
+   * @return the initial state, or -1 if there are no states
+   */
+  public int getInit () {
+    return init;
+  }
+
+  /**
+   * @param state
+   * @return ID of the state's node, as given by {@link Graph#number()}:
+   *    0 for the initial state, the others counting up from 1
+   */
+  public int getId (int state) {
+    return state == init ? 0 : state < init ? state + 1 : state;
+  }
+
+  /**
+   * @param id
+   * @return the state whose node has the given ID
+   */
+  public int getState (int id) {
+    return id == 0 ? init : id <= init ? id - 1 : id;
+  }
+
+  /**
+   * @param state
+   * @return the first outgoing edge of the state
+   */
+  public int getFirstEdge (int state) {
+    return offsets[state];
+  }
+
+  /**
+   * @param state
+   * @return the edge after the last outgoing edge of the state
+   */
+  public int getEndEdge (int state) {
+    return offsets[state + 1];
+  }
+
+  public int getTarget (int edge) {
+    return targets[edge];
+  }
+
+  public String getAction (int edge) {
+    return actions[edge];
+  }
+
+  /**
+   * @param edge
+   * @return copy of the guard of the edge
+   */
+  public Guard<PropT> getGuard (int edge) {
+    Guard<PropT> g = new Guard<PropT>();
+    g.addAll(guards.get(guardIndices[edge]));
+    return g;
+  }
+
+  /**
+   * @param edge
+   * @return index of the edge's guard in the table of guards; edges
+   *    have the same index if and only if their guards are equal
+   */
+  public int getGuardIndex (int edge) {
+    return guardIndices[edge];
+  }
+
+  /**
+   * @return number of different guards
+   */
+  public int getGuardCount () {
+    return guards.size();
+  }
+
+  /**
+   * Same as {@link Node#isAccepting()}.
+   * @param state
+   * @return whether the state is accepting
+   */
+  public boolean isAccepting (int state) {
+    return acceptance.states.get(state);
+  }
+
+  /**
+   * Same as {@link Node#isAccepting(int)}.
+   * @param state
+   * @param set
+   * @return whether the state is in the acceptance set
+   */
+  public boolean isAccepting (int state, int set) {
+    return Acceptance.get(acceptance.stateSets, set, state);
+  }
+
+  /**
+   * Same as {@link Edge#isAccepting()}.
+   * @param edge
+   * @return whether the edge is accepting
+   */
+  public boolean isEdgeAccepting (int edge) {
+    return acceptance.edges.get(edge);
+  }
+
+  /**
+   * Same as {@link Edge#isAccepting(int)}.
+   * @param edge
+   * @param set
+   * @return whether the edge is in the acceptance set
+   */
+  public boolean isEdgeAccepting (int edge, int set) {
+    return Acceptance.get(acceptance.edgeSets, set, edge);
+  }
+
+  public boolean getBooleanAttribute (String name) {
+    return attributes.getBoolean(name);
+  }
+
+  public int getIntAttribute (String name) {
+    return attributes.getInt(name);
+  }
+
+  public String getStringAttribute (String name) {
+    return attributes.getString(name);
+  }
+
+  /**
+   * @param state
+   * @param name name of an attribute other than the ID or acceptance
+   * @return value of the state's attribute, or null
+   */
+  public String getStateAttribute (int state, String name) {
+    if (stateAttributes == null || stateAttributes[state] == null) {
+      return null;
+    }
+    return stateAttributes[state].getString(name);
+  }
+
+  /**
+   * @param edge
+   * @param name name of an attribute other than acceptance
+   * @return value of the edge's attribute, or null
+   */
+  public String getEdgeAttribute (int edge, String name) {
+    if (edgeAttributes == null || edgeAttributes[edge] == null) {
+      return null;
+    }
+    return edgeAttributes[edge].getString(name);
+  }
+
+  /**
+   * @return copy of the acceptance of states and edges
+   */
+  Acceptance getAcceptance () {
+    return acceptance.copy();
+  }
+}
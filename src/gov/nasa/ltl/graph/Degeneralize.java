@@ -24,6 +24,19 @@ package gov.nasa.ltl.graph;
  */
 public class Degeneralize {
   public static <PropT> Graph<PropT> degeneralize (Graph<PropT> g) {
+    return degeneralize(g, Budget.UNLIMITED);
+  }
+
+  /**
+   * Same as {@link #degeneralize(Graph)}, checking the budget's edge
+   * limit as every edge of a new automaton is added.
+   * @param g
+   * @param budget
+   * @return degeneralized automaton equivalent to g
+   * @throws BudgetExceededException
+   */
+  public static <PropT> Graph<PropT> degeneralize (Graph<PropT> g,
+                                                   Budget budget) {
     int    nsets = g.getIntAttribute("nsets");
     String type = g.getStringAttribute("type");
 
@@ -40,11 +53,11 @@ public class Degeneralize {
 
 
           //    d.save(Graph.FSP_FORMAT);
-          g = SynchronousProduct.product(g, d);
+          g = SynchronousProduct.product(g, d, budget);
         }
       } else if (ac.equals("edges")) {
         Graph<String> d = Generate.generate(nsets);
-        g = SynchronousProduct.product(g, d);
+        g = SynchronousProduct.product(g, d, budget);
       }
     } else if (!type.equals("ba")) {
       throw new RuntimeException("invalid graph type: " + type);
@@ -58,9 +71,9 @@ public class Degeneralize {
 
     g.forAllNodes(new EmptyVisitor<PropT>() {
       public void visitNode (Node<PropT> n) {
-        if (n.getBooleanAttribute("acc0")) {
-          n.setBooleanAttribute("accepting", true);
-          n.setBooleanAttribute("acc0", false);
+        if (n.isAccepting(0)) {
+          n.setAccepting(true);
+          n.setAccepting(0, false);
         }
       }
     });
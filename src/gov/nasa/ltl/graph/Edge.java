@@ -18,6 +18,7 @@
 //
 package gov.nasa.ltl.graph;
 
+import java.util.BitSet;
 
 /**
  * DOCUMENT ME!
@@ -27,7 +28,7 @@ public class Edge<PropT> {
   private Node<PropT>       next;
   private Guard<PropT> guard;
   private String     action;
-  private Attributes attributes;
+  private TypedAttributes attributes;
 
   public Edge (Node<PropT> s, Node<PropT> n, Guard<PropT> g, String a, Attributes as) {
     init(s, n, g, a, as);
@@ -46,18 +47,15 @@ public class Edge<PropT> {
   }
 
   public Edge (Node<PropT> s, Edge<PropT> e) {
-    init(s, e.next, e.guard, e.action, 
-         new Attributes(e.attributes));
+    init(s, e.next, e.guard, e.action, e.attributes);
   }
 
   public Edge (Edge<PropT> e, Node<PropT> n) {
-    init(e.source, n, e.guard, e.action, 
-         new Attributes(e.attributes));
+    init(e.source, n, e.guard, e.action, e.attributes);
   }
 
   public Edge (Edge<PropT> e) {
-    init(e.source, e.next, e.guard, e.action, 
-         new Attributes(e.attributes));
+    init(e.source, e.next, e.guard, e.action, e.attributes);
   }
 
   public String getAction () {
@@ -65,7 +63,7 @@ public class Edge<PropT> {
   }
 
   public synchronized void setAttributes (Attributes a) {
-    attributes = new Attributes(a);
+    attributes = new TypedAttributes(a, false);
   }
 
   public Attributes getAttributes () {
@@ -80,6 +78,46 @@ public class Edge<PropT> {
     return attributes.getBoolean(name);
   }
 
+  /**
+   * Same as the "accepting" attribute.
+   * @return whether this is an accepting transition
+   */
+  public boolean isAccepting () {
+    return attributes.accepting;
+  }
+
+  public synchronized void setAccepting (boolean value) {
+    attributes.accepting = value;
+  }
+
+  /**
+   * Same as the "acc" + set attribute.
+   * @param set
+   * @return whether this edge is in the given acceptance set
+   */
+  public boolean isAccepting (int set) {
+    return attributes.acceptance.get(set);
+  }
+
+  public synchronized void setAccepting (int set, boolean value) {
+    attributes.acceptance.set(set, value);
+  }
+
+  /**
+   * @return copy of the acceptance sets this edge is in
+   */
+  public BitSet getAcceptingSets () {
+    return (BitSet) attributes.acceptance.clone();
+  }
+
+  /**
+   * @return the attributes other than acceptance, or null if there are
+   *    none
+   */
+  Attributes getUntypedAttributes () {
+    return attributes.getUntyped();
+  }
+
   public Guard<PropT> getGuard () {
     return guard;
   }
@@ -121,9 +159,9 @@ public class Edge<PropT> {
     action = a;
 
     if (as == null) {
-      attributes = new Attributes();
+      attributes = new TypedAttributes(false);
     } else {
-      attributes = as;
+      attributes = new TypedAttributes(as, false);
     }
 
     s.addOutgoingEdge(this);
@@ -58,7 +58,7 @@ public class Generate {
         Edge<String> e = new Edge<String>(nodes[i], nodes[j], new Guard<String> (), "-", null);
 
         for (int k = i; k < j; k++) {
-          e.setBooleanAttribute("acc" + k, true);
+          e.setAccepting(k, true);
         }
       }
 
@@ -69,12 +69,12 @@ public class Generate {
 
     // now the last node
     n = nodes[nnodes - 1];
-    n.setBooleanAttribute("accepting", true);
+    n.setAccepting(true);
 
     Edge<String> e = new Edge<String>(n, n, new Guard<String> (), "-", null);
 
     for (int k = 0; k < nsets; k++) {
-      e.setBooleanAttribute("acc" + k, true);
+      e.setAccepting(k, true);
     }
 
     for (int i = nsets - 1; i >= 0; i--) {
@@ -84,7 +84,7 @@ public class Generate {
         e.setBooleanAttribute("else", true);
       } else {
         for (int k = 0; k < i; k++) {
-          e.setBooleanAttribute("acc" + k, true);
+          e.setAccepting(k, true);
         }
       }
     }
@@ -18,25 +18,69 @@
 //
 package gov.nasa.ltl.graph;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
 
 /**
- * DOCUMENT ME!
+ * Nodes are kept in an array in the order they were added. They are
+ * numbered when an ID is first asked for after nodes were added or
+ * removed, rather than on every change, and looking a node up by its
+ * ID takes constant time.
  */
 public class Graph<PropT> {
-	private List<Node<PropT>> nodes;
+	private ArrayList<Node<PropT>> nodes;
+
+	/** Nodes by ID, or null if they have to be numbered again. */
+	private volatile ArrayList<Node<PropT>> byId;
 
 	private Node<PropT> init;
 
 	private Attributes attributes;
 
 	public Graph(Attributes a) {
-		init(a);
+		init(a, 0);
 	}
 
 	public Graph() {
-		init(null);
+		init(null, 0);
+	}
+
+	/**
+	 * @param a attributes of the graph, or null
+	 * @param expectedNodes number of nodes there will be room for
+	 */
+	Graph(Attributes a, int expectedNodes) {
+		init(a, expectedNodes);
+	}
+
+	/**
+	 * Deep copy: nodes, edges, guards and all attributes are copied, and
+	 * nodes keep their IDs, so changes to the copy don't affect g.
+	 * @param g
+	 */
+	public Graph(Graph<PropT> g) {
+		init(new Attributes(g.attributes), g.nodes.size());
+
+		GraphBuilder<PropT> b = new GraphBuilder<PropT>(this, g.nodes.size(),
+				g.getEdgeCount());
+		int[] copies = new int[g.nodes.size()];
+		for (Node<PropT> n: g.nodes) {
+			copies[n.getId()] = b.addNode(n.getAttributes());
+		}
+		for (Node<PropT> n: g.nodes) {
+			for (Edge<PropT> e: n.getOutgoingEdges()) {
+				Guard<PropT> guard = new Guard<PropT>();
+				guard.addAll(e.getGuard());
+				b.addEdge(copies[n.getId()], copies[e.getNext().getId()], guard,
+						e.getAction(), e.getAttributes());
+			}
+		}
+		if (g.init != null) {
+			b.setInit(copies[g.init.getId()]);
+		}
+		b.build();
 	}
 
 	public synchronized void setAttributes(Attributes a) {
@@ -58,11 +102,10 @@ public class Graph<PropT> {
 		return attributes.getBoolean(name);
 	}
 
-	public int getEdgeCount() {
+	public synchronized int getEdgeCount() {
 		int count = 0;
-		LinkedList<Node<PropT>> l = new LinkedList<Node<PropT>>(nodes);
-		
-		for (Node<PropT> n: l) {
+
+		for (Node<PropT> n: nodes) {
 			count += n.getOutgoingEdgeCount();
 		}
 
@@ -70,9 +113,9 @@ public class Graph<PropT> {
 	}
 
 	public synchronized void setInit(Node<PropT> n) {
-		if (nodes.contains(n)) {
+		if (n.getGraph() == this && nodes.contains(n)) {
 			init = n;
-			number();
+			byId = null;
 		}
 	}
 
@@ -88,22 +131,36 @@ public class Graph<PropT> {
 		return attributes.getInt(name);
 	}
 
-	public Node<PropT> getNode(int id) {
-		for (Node<PropT> n: nodes) {
-			if (n.getId() == id) {
-				return n;
-			}
+	public synchronized Node<PropT> getNode(int id) {
+		numberIfNeeded();
+
+		if (id < 0 || id >= byId.size()) {
+			return null;
 		}
 
-		return null;
+		return byId.get(id);
 	}
 
 	public int getNodeCount() {
 		return nodes.size();
 	}
 
+	/**
+	 * @return read-only view of the nodes, in the order they were added;
+	 *    iterating over it while nodes are added or removed throws a
+	 *    {@link java.util.ConcurrentModificationException}, so use
+	 *    {@link #getNodeSnapshot()} then
+	 */
 	public List<Node<PropT>> getNodes() {
-		return new LinkedList<Node<PropT>>(nodes);
+		return Collections.unmodifiableList(nodes);
+	}
+
+	/**
+	 * @return copy of the list of nodes, which is not affected by adding
+	 *    or removing nodes
+	 */
+	public synchronized List<Node<PropT>> getNodeSnapshot() {
+		return new ArrayList<Node<PropT>>(nodes);
 	}
 
 	public synchronized void setStringAttribute(String name, String value) {
@@ -119,39 +176,39 @@ public class Graph<PropT> {
 			return;
 		}
 
-		forAllNodes(new EmptyVisitor<PropT>() {
-			public void visitNode(Node<PropT> n) {
-				n.setBooleanAttribute("_reached", false);
-			}
-		});
-
-		dfs(init, v);
-
-		forAllNodes(new EmptyVisitor<PropT>() {
-			public void visitNode(Node<PropT> n) {
-				n.setBooleanAttribute("_reached", false);
-			}
-		});
+		dfs(init, v, new NodeTable(this).bits());
 	}
 
+	/**
+	 * Visits every node and its outgoing edges. The visitor may change
+	 * attributes, but must not add or remove nodes or edges.
+	 * @param v
+	 */
 	public synchronized void forAll(Visitor<PropT> v) {
-	    LinkedList<Node<PropT>> l = new LinkedList<Node<PropT>>(nodes);
-		for (Node<PropT> n: l) {
+		for (Node<PropT> n: nodes) {
 			v.visitNode(n);
 			n.forAllEdges(v);
 		}
 	}
 
+	/**
+	 * Visits every edge. The visitor may change attributes, but must not
+	 * add or remove nodes or edges.
+	 * @param v
+	 */
 	public synchronized void forAllEdges(Visitor<PropT> v) {
-	    LinkedList<Node<PropT>> l = new LinkedList<Node<PropT>>(nodes);
-		for (Node<PropT> n: l) {
+		for (Node<PropT> n: nodes) {
 			n.forAllEdges(v);
 		}
 	}
 
+	/**
+	 * Visits every node. The visitor may change attributes, but must not
+	 * add or remove nodes or edges.
+	 * @param v
+	 */
 	public synchronized void forAllNodes(Visitor<PropT> v) {
-	    LinkedList<Node<PropT>> l = new LinkedList<Node<PropT>>(nodes);
-		for (Node<PropT> n: l) {
+		for (Node<PropT> n: nodes) {
 			v.visitNode(n);
 		}
 	}
@@ -163,7 +220,7 @@ public class Graph<PropT> {
 			init = n;
 		}
 
-		number();
+		byId = null;
 	}
 
 	synchronized void removeNode(Node<PropT> n) {
@@ -177,25 +234,33 @@ public class Graph<PropT> {
 			}
 		}
 
-		number();
+		byId = null;
 	}
 
-	private void init(Attributes a) {
+	private void init(Attributes a, int expectedNodes) {
 		if (a == null) {
 			attributes = new Attributes();
 		} else {
 			attributes = a;
 		}
 
-		nodes = new LinkedList<Node<PropT>>();
+		nodes = new ArrayList<Node<PropT>>(expectedNodes);
+		byId = null;
 		init = null;
 	}
 
+	/**
+	 * Numbers the nodes: the initial node gets 0, the others follow in
+	 * the order they were added. This happens by itself when an ID is
+	 * needed, so it need not be called after changing the graph.
+	 */
 	public synchronized void number() {
+		ArrayList<Node<PropT>> ids = new ArrayList<Node<PropT>>(nodes.size());
 		int cnt;
 
 		if (init != null) {
 			init.setId(0);
+			ids.add(init);
 			cnt = 1;
 		} else {
 			cnt = 0;
@@ -204,24 +269,38 @@ public class Graph<PropT> {
 		for (Node<PropT> n: nodes) {
 			if (n != init) {
 				n.setId(cnt++);
+				ids.add(n);
 			}
 		}
+
+		byId = ids;
+	}
+
+	/**
+	 * Numbers the nodes if nodes were added or removed since they were
+	 * last numbered.
+	 */
+	void numberIfNeeded() {
+		if (byId == null) {
+			number();
+		}
 	}
 
-	private synchronized void dfs(Node<PropT> n, Visitor<PropT> v) {
+	private synchronized void dfs(Node<PropT> n, Visitor<PropT> v,
+			final BitSet reached) {
 		final Visitor<PropT> visitor = v;
 
-		if (n.getBooleanAttribute("_reached")) {
+		if (reached.get(NodeTable.index(n))) {
 			return;
 		}
 
-		n.setBooleanAttribute("_reached", true);
+		reached.set(NodeTable.index(n));
 
 		v.visitNode(n);
 
 		n.forAllEdges(new EmptyVisitor<PropT>() {
 			public void visitEdge(Edge<PropT> e) {
-				dfs(e.getNext(), visitor);
+				dfs(e.getNext(), visitor, reached);
 			}
 		});
 	}
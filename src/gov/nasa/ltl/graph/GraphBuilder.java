@@ -0,0 +1,169 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+// 
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+// 
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.ltl.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Builds a graph whose size is known, or can be estimated, in advance.
+ * Nodes are referred to by the index {@link #addNode(Attributes)}
+ * returns. Edges are collected first and only attached to their nodes
+ * by {@link #build()}, so every node gets edge lists of exactly the
+ * right size. The graph is the same as one built by creating its nodes
+ * and edges one by one in the same order.
+ *
+ * A builder can only be used once.
+ */
+public class GraphBuilder<PropT> {
+  private final Graph<PropT> graph;
+  private final ArrayList<Attributes> nodes;
+  private int[]      sources;
+  private int[]      targets;
+  private final ArrayList<Guard<PropT>> guards;
+  private final ArrayList<String> actions;
+  private final ArrayList<Attributes> edgeAttributes;
+  private int        edgeCount = 0;
+  private int        init = -1;
+  private boolean    built = false;
+
+  /**
+   * @param expectedNodes number of nodes the graph will probably have
+   * @param expectedEdges number of edges the graph will probably have
+   */
+  public GraphBuilder (int expectedNodes, int expectedEdges) {
+    this((Attributes) null, expectedNodes, expectedEdges);
+  }
+
+  /**
+   * @param a attributes of the graph, or null
+   * @param expectedNodes number of nodes the graph will probably have
+   * @param expectedEdges number of edges the graph will probably have
+   */
+  public GraphBuilder (Attributes a, int expectedNodes, int expectedEdges) {
+    this(new Graph<PropT>(a, expectedNodes), expectedNodes, expectedEdges);
+  }
+
+  /**
+   * @param g empty graph to add the nodes and edges to
+   */
+  GraphBuilder (Graph<PropT> g, int expectedNodes, int expectedEdges) {
+    assert g.getNodeCount() == 0 : "graph is not empty";
+    graph = g;
+    nodes = new ArrayList<Attributes>(expectedNodes);
+    sources = new int[Math.max(expectedEdges, 1)];
+    targets = new int[sources.length];
+    guards = new ArrayList<Guard<PropT>>(expectedEdges);
+    actions = new ArrayList<String>(expectedEdges);
+    edgeAttributes = new ArrayList<Attributes>(expectedEdges);
+  }
+
+  /**
+   * @param a attributes of the node, or null; copied when the graph is
+   *    built
+   * @return index of the new node
+   */
+  public int addNode (Attributes a) {
+    nodes.add(a);
+    return nodes.size() - 1;
+  }
+
+  /**
+   * @return index of the new node, which has no attributes
+   */
+  public int addNode () {
+    return addNode(null);
+  }
+
+  /**
+   * Replaces the attributes of a node.
+   * @param node index of the node
+   * @param a attributes of the node, or null; copied when the graph is
+   *    built
+   */
+  public void setNodeAttributes (int node, Attributes a) {
+    nodes.set(node, a);
+  }
+
+  /**
+   * @param source index of the source node
+   * @param next index of the target node
+   * @param g guard of the edge, used as it is
+   * @param action
+   * @param a attributes of the edge, or null; copied when the graph is
+   *    built
+   */
+  public void addEdge (int source, int next, Guard<PropT> g, String action,
+                       Attributes a) {
+    assert source >= 0 && source < nodes.size() : "no node " + source;
+    assert next >= 0 && next < nodes.size() : "no node " + next;
+    if (edgeCount == sources.length) {
+      sources = Arrays.copyOf(sources, 2 * edgeCount);
+      targets = Arrays.copyOf(targets, 2 * edgeCount);
+    }
+    sources[edgeCount] = source;
+    targets[edgeCount] = next;
+    edgeCount++;
+    guards.add(g);
+    actions.add(action);
+    edgeAttributes.add(a);
+  }
+
+  public void addEdge (int source, int next, Guard<PropT> g) {
+    addEdge(source, next, g, "-", null);
+  }
+
+  /**
+   * Makes a node the initial one; otherwise it is the first node.
+   * @param node index of the node
+   */
+  public void setInit (int node) {
+    assert node >= 0 && node < nodes.size() : "no node " + node;
+    init = node;
+  }
+
+  /**
+   * @return the graph
+   */
+  public Graph<PropT> build () {
+    assert !built : "graph already built";
+    built = true;
+
+    int[] outgoing = new int[nodes.size()];
+    int[] incoming = new int[nodes.size()];
+    for (int i = 0; i < edgeCount; i++) {
+      outgoing[sources[i]]++;
+      incoming[targets[i]]++;
+    }
+
+    ArrayList<Node<PropT>> n = new ArrayList<Node<PropT>>(nodes.size());
+    for (int i = 0; i < nodes.size(); i++) {
+      n.add(new Node<PropT>(graph, nodes.get(i), outgoing[i], incoming[i]));
+    }
+    for (int i = 0; i < edgeCount; i++) {
+      // for side effect in constructor:
+      new Edge<PropT>(n.get(sources[i]), n.get(targets[i]), guards.get(i),
+                      actions.get(i), edgeAttributes.get(i));
+    }
+    if (init >= 0) {
+      graph.setInit(n.get(init));
+    }
+    return graph;
+  }
+}
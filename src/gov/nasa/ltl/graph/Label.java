@@ -44,15 +44,15 @@ public class Label {
             Node<PropT> n1 = e.getSource();
 
             for (int i = 0; i < nsets; i++) {
-              if (n1.getBooleanAttribute("acc" + i)) {
-                e.setBooleanAttribute("acc" + i, true);
+              if (n1.isAccepting(i)) {
+                e.setAccepting(i, true);
               }
             }
           }
         });
 
         for (int i = 0; i < nsets; i++) {
-          n.setBooleanAttribute("acc" + i, false);
+          n.setAccepting(i, false);
         }
       }
     });
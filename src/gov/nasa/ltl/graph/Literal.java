@@ -76,9 +76,13 @@ public class Literal<PropT> implements Comparable<Literal<PropT>> {
    * and from there an ordering of the atoms.
    * 
    * The representatives list takes arbitrary objects, in case we ever
-   * use Literal over different PropT classes concurrently.
+   * use Literal over different PropT classes concurrently. It is
+   * shared by all translations, including those run in parallel by
+   * LTL2Buchi.translateAll, so it is only used while holding its lock;
+   * looking up both atoms and adding them must be one step, or two
+   * threads could order the same pair differently.
    */
-  private static ArrayList<Object> representatives = new ArrayList<Object>();
+  private static final ArrayList<Object> representatives = new ArrayList<Object>();
   
   @SuppressWarnings ("unchecked")
   private int compareAtoms (PropT a1, PropT a2) {
@@ -93,17 +97,19 @@ public class Literal<PropT> implements Comparable<Literal<PropT>> {
     if (a1.equals (a2))
       return 0;
     // else, a1 and a2 are not equivalent
-    for (Object o: representatives) { // iterator is ordered
-      if (a1.equals (o))
-        return -1;
-      if (a2.equals (o))
-        return 1;
+    synchronized (representatives) {
+      for (Object o: representatives) { // iterator is ordered
+        if (a1.equals (o))
+          return -1;
+        if (a2.equals (o))
+          return 1;
+      }
+      /* If we get here, neither atom has been recorded yet and we know
+       * they are not equivalent, so make two new equivalence classes.
+       */
+      representatives.add (a1);
+      representatives.add (a2);
+      return -1;
     }
-    /* If we get here, neither atom has been recorded yet and we know
-     * they are not equivalent, so make two new equivalence classes.
-     */
-    representatives.add (a1);
-    representatives.add (a2);
-    return -1;
   }
 }
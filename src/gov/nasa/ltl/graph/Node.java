@@ -18,7 +18,9 @@
 //
 package gov.nasa.ltl.graph;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -31,7 +33,7 @@ public class Node<PropT> {
 
 	private List<Edge<PropT>> incomingEdges;
 
-	private Attributes attributes;
+	private TypedAttributes attributes;
 
 	public Node(Graph<PropT> g, Attributes a) {
 		init(g, a);
@@ -41,8 +43,19 @@ public class Node<PropT> {
 		init(g, null);
 	}
 
+	/**
+	 * @param g
+	 * @param a
+	 * @param outgoing number of outgoing edges there will be room for
+	 * @param incoming number of incoming edges there will be room for
+	 */
+	Node(Graph<PropT> g, Attributes a, int outgoing, int incoming) {
+		init(g, a, outgoing, incoming);
+	}
+
 	public Node(Node<PropT> n) {
-		init(n.graph, new Attributes(n.attributes));
+		init(n.graph, n.attributes, n.outgoingEdges.size(),
+				n.incomingEdges.size());
 
 		for (Edge<PropT> e: n.outgoingEdges) {
 			new Edge<PropT>(this, e);
@@ -55,12 +68,12 @@ public class Node<PropT> {
 
 	public synchronized void setAttributes(Attributes a) {
 		int id = getId();
-		attributes = new Attributes(a);
+		attributes = new TypedAttributes(a, true);
 		setId(id);
 	}
 
 	public Attributes getAttributes() {
-		return attributes;
+		return numbered();
 	}
 
 	public synchronized void setBooleanAttribute(String name, boolean value) {
@@ -72,23 +85,77 @@ public class Node<PropT> {
 	}
 
 	public boolean getBooleanAttribute(String name) {
-		return attributes.getBoolean(name);
+		return numbered().getBoolean(name);
+	}
+
+	/**
+	 * Same as the "accepting" attribute.
+	 * @return whether this is an accepting state
+	 */
+	public boolean isAccepting() {
+		return attributes.accepting;
+	}
+
+	public synchronized void setAccepting(boolean value) {
+		attributes.accepting = value;
+	}
+
+	/**
+	 * Same as the "acc" + set attribute.
+	 * @param set
+	 * @return whether this node is in the given acceptance set
+	 */
+	public boolean isAccepting(int set) {
+		return attributes.acceptance.get(set);
+	}
+
+	public synchronized void setAccepting(int set, boolean value) {
+		attributes.acceptance.set(set, value);
+	}
+
+	/**
+	 * @return copy of the acceptance sets this node is in
+	 */
+	public BitSet getAcceptingSets() {
+		return (BitSet) attributes.acceptance.clone();
+	}
+
+	/**
+	 * @return the attributes other than the ID and acceptance, or null
+	 *    if there are none
+	 */
+	Attributes getUntypedAttributes() {
+		return attributes.getUntyped();
 	}
 
 	public Graph<PropT> getGraph() {
 		return graph;
 	}
 
-	public synchronized int getId() {
-		return attributes.getInt("_id");
+	public int getId() {
+		graph.numberIfNeeded();
+
+		return attributes.id;
 	}
 
 	public int getIncomingEdgeCount() {
 		return outgoingEdges.size();
 	}
 
+	/**
+	 * @return read-only view of the incoming edges; use
+	 *    {@link #getIncomingEdgeSnapshot()} to add or remove edges while
+	 *    iterating
+	 */
 	public List<Edge<PropT>> getIncomingEdges() {
-		return new LinkedList<Edge<PropT>>(incomingEdges);
+		return Collections.unmodifiableList(incomingEdges);
+	}
+
+	/**
+	 * @return copy of the list of incoming edges
+	 */
+	public synchronized List<Edge<PropT>> getIncomingEdgeSnapshot() {
+		return new ArrayList<Edge<PropT>>(incomingEdges);
 	}
 
 	public synchronized void setIntAttribute(String name, int value) {
@@ -100,15 +167,27 @@ public class Node<PropT> {
 	}
 
 	public int getIntAttribute(String name) {
-		return attributes.getInt(name);
+		return numbered().getInt(name);
 	}
 
 	public int getOutgoingEdgeCount() {
 		return outgoingEdges.size();
 	}
 
+	/**
+	 * @return read-only view of the outgoing edges; use
+	 *    {@link #getOutgoingEdgeSnapshot()} to add or remove edges while
+	 *    iterating
+	 */
 	public List<Edge<PropT>> getOutgoingEdges() {
-		return new LinkedList<Edge<PropT>>(outgoingEdges);
+		return Collections.unmodifiableList(outgoingEdges);
+	}
+
+	/**
+	 * @return copy of the list of outgoing edges
+	 */
+	public synchronized List<Edge<PropT>> getOutgoingEdgeSnapshot() {
+		return new ArrayList<Edge<PropT>>(outgoingEdges);
 	}
 
 	public synchronized void setStringAttribute(String name, String value) {
@@ -120,23 +199,25 @@ public class Node<PropT> {
 	}
 
 	public String getStringAttribute(String name) {
-		return attributes.getString(name);
+		return numbered().getString(name);
 	}
 
+	/**
+	 * Visits the outgoing edges. The visitor may change attributes, but
+	 * must not add or remove nodes or edges.
+	 * @param v
+	 */
 	public synchronized void forAllEdges(Visitor<PropT> v) {
-	    LinkedList<Edge<PropT>> l = new LinkedList<Edge<PropT>>(outgoingEdges);
-		for (Edge<PropT> e: l) {
+		for (Edge<PropT> e: outgoingEdges) {
 			v.visitEdge(e);
 		}
 	}
 
 	public synchronized void remove() {
-        LinkedList<Edge<PropT>> l = new LinkedList<Edge<PropT>>(outgoingEdges);
-		for (Edge<PropT> e: l) {
+		for (Edge<PropT> e: getOutgoingEdgeSnapshot()) {
 			e.remove();
 		}
-        LinkedList<Edge<PropT>> k = new LinkedList<Edge<PropT>>(incomingEdges);
-		for (Edge<PropT> e: k) {
+		for (Edge<PropT> e: getIncomingEdgeSnapshot()) {
 			e.remove();
 		}
 
@@ -144,7 +225,7 @@ public class Node<PropT> {
 	}
 
 	synchronized void setId(int id) {
-		attributes.setInt("_id", id);
+		attributes.id = id;
 	}
 
 	synchronized void addIncomingEdge(Edge<PropT> e) {
@@ -163,17 +244,31 @@ public class Node<PropT> {
 		outgoingEdges.remove(e);
 	}
 
+	/**
+	 * @return the attributes, with the current ID
+	 */
+	private TypedAttributes numbered() {
+		graph.numberIfNeeded();
+
+		return attributes;
+	}
+
 	private void init(Graph<PropT> g, Attributes a) {
+		init(g, a, 2, 2);
+	}
+
+	private void init(Graph<PropT> g, Attributes a, int outgoing,
+			int incoming) {
 		graph = g;
 
 		if (a == null) {
-			attributes = new Attributes();
+			attributes = new TypedAttributes(true);
 		} else {
-			attributes = a;
+			attributes = new TypedAttributes(a, true);
 		}
 
-		incomingEdges = new LinkedList<Edge<PropT>>();
-		outgoingEdges = new LinkedList<Edge<PropT>>();
+		incomingEdges = new ArrayList<Edge<PropT>>(incoming);
+		outgoingEdges = new ArrayList<Edge<PropT>>(outgoing);
 
 		graph.addNode(this);
 	}
@@ -0,0 +1,89 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+// 
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+// 
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.ltl.graph;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Per-node data of a graph algorithm, kept in arrays indexed by node ID
+ * instead of in node attributes. The algorithm owns the arrays, so it
+ * neither changes the graph nor has to clean up after itself, and
+ * reading or writing a value costs an array access rather than a
+ * table lookup and a number conversion.
+ *
+ * Nodes are numbered 0 to {@link Graph#getNodeCount()} - 1, so the
+ * arrays are as long as the graph has nodes. They are only valid as
+ * long as no nodes are added to or removed from the graph.
+ */
+public final class NodeTable {
+  private final int size;
+
+  /**
+   * @param g graph whose nodes are to be indexed
+   */
+  public NodeTable (Graph<?> g) {
+    size = g.getNodeCount ();
+    assert numbered (g) : "node IDs are not dense";
+  }
+
+  /**
+   * @return number of nodes, and so the length of the arrays
+   */
+  public int size () {
+    return size;
+  }
+
+  /**
+   * @param n node of the graph
+   * @return index of n in the arrays
+   */
+  public static int index (Node<?> n) {
+    return n.getId ();
+  }
+
+  /**
+   * @param initial value of every node
+   * @return array with one value per node
+   */
+  public int[] ints (int initial) {
+    int[] a = new int[size];
+    if (initial != 0)
+      Arrays.fill (a, initial);
+    return a;
+  }
+
+  /**
+   * @return set of nodes, initially empty
+   */
+  public BitSet bits () {
+    return new BitSet (size);
+  }
+
+  private static boolean numbered (Graph<?> g) {
+    BitSet ids = new BitSet ();
+    for (Node<?> n: g.getNodes ()) {
+      int id = n.getId ();
+      if (id < 0 || id >= g.getNodeCount () || ids.get (id))
+        return false;
+      ids.set (id);
+    }
+    return true;
+  }
+}
@@ -19,6 +19,7 @@
 package gov.nasa.ltl.graph;
 
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -35,9 +36,8 @@ public class SCC {
       return new LinkedList<List<Node<PropT>>>();
     }
 
-    init.setBooleanAttribute("_reached", true);
-
-    SCCState<PropT> s = new SCCState<PropT>();
+    SCCState<PropT> s = new SCCState<PropT>(new NodeTable(g));
+    s.reached.set(NodeTable.index(init));
     visit(init, s);
 
     final List<Node<PropT>>[] scc = new List[s.SCC];
@@ -46,49 +46,158 @@ public class SCC {
       scc[i] = new LinkedList<Node<PropT>>();
     }
 
-    g.forAllNodes(new EmptyVisitor<PropT>() {
-      public void visitNode (Node<PropT> n) {
-        scc[n.getIntAttribute("_scc")].add(n);
+    for (Node<PropT> n: g.getNodes()) {
+      scc[s.scc[NodeTable.index(n)]].add(n);
+    }
+    return Arrays.asList (scc);
+  }
+
+  /**
+   * Strongly connected components of a compact graph, numbered and
+   * ordered as by {@link #scc(Graph)}.
+   * @param g
+   * @return the states of each component, in increasing order
+   */
+  public static int[][] scc (CompactGraph<?> g) {
+    int[] component = new int[g.getStateCount()];
+    BitSet removed = new BitSet();
+    int count = components(g, g.getInit(), removed, component);
 
-        n.setBooleanAttribute("_reached", false);
-        n.setBooleanAttribute("_dfsnum", false);
-        n.setBooleanAttribute("_low", false);
-        n.setBooleanAttribute("_scc", false);
+    return group(component, count, removed);
+  }
+
+  /**
+   * Finds the components of the states of g which are not removed,
+   * leaving out the edges into removed states. As for graphs, states
+   * which cannot be reached from init are put into component 0.
+   * @param g
+   * @param init state to start from, or -1
+   * @param removed states to ignore
+   * @param component set to the component of every state which is not
+   *    removed
+   * @return number of components
+   */
+  static int components (CompactGraph<?> g, int init, BitSet removed,
+                         int[] component) {
+    int n = g.getStateCount();
+    int[] dfsnum = new int[n];
+    int[] low = new int[n];
+    int[] next = new int[n];  // next edge to follow, by state
+    int[] path = new int[n];  // states being visited
+    int[] stack = new int[n]; // states not yet assigned a component
+    BitSet reached = new BitSet(n);
+    BitSet onStack = new BitSet(n);
+    int N = 0, SCC = 0, depth = 0, top = 0;
+
+    Arrays.fill(component, 0);
+    if (init < 0) {
+      return 0;
+    }
+
+    reached.set(init);
+    path[depth++] = init;
+    stack[top++] = init;
+    onStack.set(init);
+    dfsnum[init] = low[init] = N++;
+    next[init] = g.getFirstEdge(init);
+
+    while (depth > 0) {
+      int p = path[depth - 1];
+
+      if (next[p] < g.getEndEdge(p)) {
+        int q = g.getTarget(next[p]++);
+
+        if (removed.get(q)) {
+          continue;
+        }
+        if (!reached.get(q)) {
+          reached.set(q);
+          path[depth++] = q;
+          stack[top++] = q;
+          onStack.set(q);
+          dfsnum[q] = low[q] = N++;
+          next[q] = g.getFirstEdge(q);
+        } else if (dfsnum[q] < dfsnum[p] && onStack.get(q)) {
+          low[p] = Math.min(low[p], dfsnum[q]);
+        }
+        continue;
       }
-    });
-    return Arrays.asList (scc);
+
+      depth--;
+      if (low[p] == dfsnum[p]) {
+        int v;
+
+        do {
+          v = stack[--top];
+          onStack.clear(v);
+          component[v] = SCC;
+        } while (v != p);
+
+        SCC++;
+      }
+      if (depth > 0) {
+        int parent = path[depth - 1];
+        low[parent] = Math.min(low[parent], low[p]);
+      }
+    }
+    return SCC;
+  }
+
+  /**
+   * @return the states which are not removed, by component
+   */
+  static int[][] group (int[] component, int count, BitSet removed) {
+    int[] size = new int[count];
+    for (int s = 0; s < component.length; s++) {
+      if (!removed.get(s)) {
+        size[component[s]]++;
+      }
+    }
+
+    int[][] result = new int[count][];
+    for (int c = 0; c < count; c++) {
+      result[c] = new int[size[c]];
+      size[c] = 0;
+    }
+    for (int s = 0; s < component.length; s++) {
+      if (!removed.get(s)) {
+        result[component[s]][size[component[s]]++] = s;
+      }
+    }
+    return result;
   }
 
   private static <PropT> void visit (Node<PropT> p, SCCState<PropT> s) {
+    int pi = NodeTable.index(p);
+
     s.L.add(0, p);
-    p.setIntAttribute("_dfsnum", s.N);
-    p.setIntAttribute("_low", s.N);
+    s.onStack.set(pi);
+    s.dfsnum[pi] = s.N;
+    s.low[pi] = s.N;
     s.N++;
 
     for (Edge<PropT> e: p.getOutgoingEdges()) {
       Node<PropT> q = e.getNext();
+      int qi = NodeTable.index(q);
 
-      if (!q.getBooleanAttribute("_reached")) {
-        q.setBooleanAttribute("_reached", true);
+      if (!s.reached.get(qi)) {
+        s.reached.set(qi);
         visit(q, s);
-        p.setIntAttribute("_low", 
-                          Math.min(p.getIntAttribute("_low"), 
-                                   q.getIntAttribute("_low")));
-      } else if (q.getIntAttribute("_dfsnum") < p.getIntAttribute("_dfsnum")) {
-        if (s.L.contains(q)) {
-          p.setIntAttribute("_low", 
-                            Math.min(p.getIntAttribute("_low"), 
-                                     q.getIntAttribute("_dfsnum")));
+        s.low[pi] = Math.min(s.low[pi], s.low[qi]);
+      } else if (s.dfsnum[qi] < s.dfsnum[pi]) {
+        if (s.onStack.get(qi)) {
+          s.low[pi] = Math.min(s.low[pi], s.dfsnum[qi]);
         }
       }
     }
 
-    if (p.getIntAttribute("_low") == p.getIntAttribute("_dfsnum")) {
+    if (s.low[pi] == s.dfsnum[pi]) {
       Node<PropT> v;
 
       do {
         v = s.L.remove(0);
-        v.setIntAttribute("_scc", s.SCC);
+        s.onStack.clear(NodeTable.index(v));
+        s.scc[NodeTable.index(v)] = s.SCC;
       } while (v != p);
 
       s.SCC++;
@@ -96,11 +205,24 @@ public class SCC {
   }
 
   /**
-   * DOCUMENT ME!
+   * State of the search; the arrays are indexed by node ID.
    */
   private static class SCCState<PropT> {
     public int  N = 0;
     public int  SCC = 0;
     public List<Node<PropT>> L = new LinkedList<Node<PropT>>();
+    public final BitSet reached;
+    public final BitSet onStack;
+    public final int[] dfsnum;
+    public final int[] low;
+    public final int[] scc;
+
+    SCCState (NodeTable t) {
+      reached = t.bits();
+      onStack = t.bits();
+      dfsnum = t.ints(0);
+      low = t.ints(0);
+      scc = t.ints(0);
+    }
   }
 }
@@ -18,6 +18,7 @@
 //
 package gov.nasa.ltl.graph;
 
+import java.util.BitSet;
 import java.util.List;
 
 
@@ -80,11 +81,11 @@ public class SCCReduction {
     if (!gba) {
       for (Node<PropT> n: scc)
         if (nac) {
-          if (n.getBooleanAttribute("accepting"))
+          if (n.isAccepting())
             return true;
         } else // edges
           for (Edge<PropT> e: n.getOutgoingEdges ())
-            if (e.getBooleanAttribute("accepting"))
+            if (e.isAccepting())
               return true;
       return false;
     } else { // gba
@@ -92,13 +93,13 @@ public class SCCReduction {
         found = false;
         nodes: for (Node<PropT> n: scc) {
           if (nac) {
-            if (n.getBooleanAttribute("acc" + j)) {
+            if (n.isAccepting(j)) {
               found = true;
               break nodes;
             }
           } else // edges
             for (Edge<PropT> e: n.getOutgoingEdges ()) {
-              if (e.getBooleanAttribute("acc" + j)) {
+              if (e.isAccepting(j)) {
                 found = true;
                 break nodes;
               }
@@ -165,22 +166,22 @@ public class SCCReduction {
     int nsets = g.getIntAttribute("nsets");
 
     for (Node<PropT> n: scc)
-      if (!gba)
+      if (!gba) {
         if (nac) {
-          if (n.getBooleanAttribute ("accepting"))
+          if (n.isAccepting ())
             return true;
         } else // edges
           for (Edge<PropT> e: n.getOutgoingEdges ())
-            if (e.getBooleanAttribute("accepting"))
+            if (e.isAccepting())
               return true;
-      else // gba
+      } else // gba
         for (int k = 0; k < nsets; k++)
           if (nac) { 
-            if (n.getBooleanAttribute ("acc" + k))
+            if (n.isAccepting (k))
               return true;
           } else // edges
             for (Edge<PropT> f: n.getOutgoingEdges ())
-              if (f.getBooleanAttribute("acc" + k))
+              if (f.isAccepting(k))
                 return true;
     return false;
   }
@@ -201,20 +202,20 @@ public class SCCReduction {
     if (!gba)
       if (nac)
         for (Node<PropT> n: scc)
-          n.setBooleanAttribute("accepting", false);
+          n.setAccepting(false);
       else // edges
         for (Node<PropT> n: scc)
           for (Edge<PropT> e: n.getOutgoingEdges ())
-            e.setBooleanAttribute("accepting", false);
+            e.setAccepting(false);
     else // gba
       for (int j = 0; j < nsets; j++)
         if (nac)
           for (Node<PropT> n: scc)
-            n.setBooleanAttribute("acc" + j, false);
+            n.setAccepting(j, false);
         else // edges
           for (Node<PropT> n: scc)
             for (Edge<PropT> e: n.getOutgoingEdges ())
-              e.setBooleanAttribute("acc" + j, false);
+              e.setAccepting(j, false);
   }
 
   /**
@@ -236,8 +237,164 @@ public class SCCReduction {
         if (!scc.contains(e.getNext()))
           if (gba)
             for (int k = 0; k < nsets; k++)
-              e.setBooleanAttribute("acc" + k, false);
+              e.setAccepting(k, false);
           else // ba
-            e.setBooleanAttribute ("accepting", false);
+            e.setAccepting (false);
+  }
+
+  /**
+   * Same as {@link #reduce(Graph)}, for a compact graph.
+   * @param g
+   * @return reduced copy of g
+   */
+  public static <PropT> CompactGraph<PropT> reduce (CompactGraph<PropT> g) {
+    String  type = g.getStringAttribute("type");
+    String  ac = g.getStringAttribute("ac");
+    assert ac.equals ("nodes") || ac.equals ("edges") :
+      "invalid accepting type: " + ac;
+    assert type.equals ("ba") || type.equals ("gba") :
+      "invalid graph type: " + type;
+    boolean gba = type.equals ("gba"), nac = ac.equals ("nodes");
+    int     nsets = g.getIntAttribute("nsets");
+    CompactGraph.Acceptance acc = g.getAcceptance ();
+    BitSet  removed = new BitSet ();
+    int[]   component = new int[g.getStateCount ()];
+    int     init = g.getInit ();
+    boolean changed;
+
+    int count = SCC.components (g, init, removed, component);
+    int[][] sccs = SCC.group (component, count, removed);
+    if (!nac) {
+      for (int c = 0; c < count; c++) {
+        for (int s: sccs[c]) {
+          for (int e = g.getFirstEdge (s); e < g.getEndEdge (s); e++) {
+            if (component[g.getTarget (e)] == c)
+              continue;
+            if (gba)
+              for (int k = 0; k < nsets; k++)
+                CompactGraph.Acceptance.clear (acc.edgeSets, k, e);
+            else
+              acc.edges.clear (e);
+          }
+        }
+      }
+    }
+
+    do {
+      changed = false;
+      count = SCC.components (g, init, removed, component);
+      sccs = SCC.group (component, count, removed);
+
+      for (int c = 0; c < count; c++) {
+        boolean accepting = isAccepting (g, sccs[c], removed, acc, gba, nac,
+                                         nsets);
+
+        if (!accepting && isTerminal (g, sccs[c], c, component, removed)) {
+          changed = true;
+          for (int s: sccs[c])
+            removed.set (s);
+        } else if (isTransient (g, sccs[c], removed) || !accepting) {
+          for (int s: sccs[c]) {
+            changed |= clearAccepting (g, s, removed, acc, gba, nac, nsets);
+          }
+        }
+      }
+      if (init >= 0 && removed.get (init)) {
+        // as Graph.removeNode does, make the first node left initial
+        init = removed.nextClearBit (0);
+        if (init >= g.getStateCount ())
+          init = -1;
+      }
+    } while (changed);
+
+    return new CompactGraph<PropT> (g, removed, init, acc);
+  }
+
+  private static <PropT> boolean isAccepting (CompactGraph<PropT> g,
+      int[] scc, BitSet removed, CompactGraph.Acceptance acc,
+      boolean gba, boolean nac, int nsets) {
+    for (int j = 0; j < (gba ? nsets : 1); j++) {
+      boolean found = false;
+      states: for (int s: scc) {
+        if (nac) {
+          if (gba ? CompactGraph.Acceptance.get (acc.stateSets, j, s)
+                  : acc.states.get (s)) {
+            found = true;
+            break states;
+          }
+        } else // edges
+          for (int e = g.getFirstEdge (s); e < g.getEndEdge (s); e++) {
+            if (removed.get (g.getTarget (e)))
+              continue;
+            if (gba ? CompactGraph.Acceptance.get (acc.edgeSets, j, e)
+                    : acc.edges.get (e)) {
+              found = true;
+              break states;
+            }
+          }
+      }
+      if (!found)
+        return false;
+    }
+    return true;
+  }
+
+  private static <PropT> boolean isTerminal (CompactGraph<PropT> g,
+      int[] scc, int c, int[] component, BitSet removed) {
+    for (int s: scc) {
+      for (int e = g.getFirstEdge (s); e < g.getEndEdge (s); e++) {
+        int t = g.getTarget (e);
+        if (!removed.get (t) && component[t] != c)
+          return false;
+      }
+    }
+    return true;
+  }
+
+  private static <PropT> boolean isTransient (CompactGraph<PropT> g,
+      int[] scc, BitSet removed) {
+    if (scc.length != 1)
+      return false;
+    int s = scc[0];
+    for (int e = g.getFirstEdge (s); e < g.getEndEdge (s); e++) {
+      if (g.getTarget (e) == s)
+        return false;
+    }
+    return true;
+  }
+
+  /**
+   * Removes a state (if the graph is node-accepting) or its edges
+   * (otherwise) from every accepting set.
+   * @return whether it or they were in any accepting set
+   */
+  private static <PropT> boolean clearAccepting (CompactGraph<PropT> g,
+      int s, BitSet removed, CompactGraph.Acceptance acc,
+      boolean gba, boolean nac, int nsets) {
+    boolean any = false;
+
+    if (nac) {
+      if (!gba) {
+        any = acc.states.get (s);
+        acc.states.clear (s);
+      } else
+        for (int k = 0; k < nsets; k++) {
+          any |= CompactGraph.Acceptance.get (acc.stateSets, k, s);
+          CompactGraph.Acceptance.clear (acc.stateSets, k, s);
+        }
+      return any;
+    }
+    for (int e = g.getFirstEdge (s); e < g.getEndEdge (s); e++) {
+      boolean live = !removed.get (g.getTarget (e));
+      if (!gba) {
+        any |= live && acc.edges.get (e);
+        acc.edges.clear (e);
+      } else
+        for (int k = 0; k < nsets; k++) {
+          any |= live && CompactGraph.Acceptance.get (acc.edgeSets, k, e);
+          CompactGraph.Acceptance.clear (acc.edgeSets, k, e);
+        }
+    }
+    return any;
   }
 }
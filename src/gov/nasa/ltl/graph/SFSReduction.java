@@ -29,8 +29,20 @@ import java.util.Vector;
  * DOCUMENT ME!
  */
 public class SFSReduction {
-  @SuppressWarnings ("unchecked")
   public static <PropT> Graph<PropT> reduce (Graph<PropT> g) {
+    return reduce (g, Budget.UNLIMITED);
+  }
+
+  /**
+   * Reduces g by fair simulation, checking the budget once per
+   * refinement round. The colors of the nodes are kept in a
+   * {@link NodeTable}, so if the budget runs out, g is unchanged.
+   * @param g
+   * @param budget
+   * @return reduced automaton
+   */
+  @SuppressWarnings ("unchecked")
+  public static <PropT> Graph<PropT> reduce (Graph<PropT> g, Budget budget) {
     // debugged by Dimitra 3/4/02 - added |PO| information so that main while
     // loop works correctly - removed break statement based on color only
     int        currNumColors;
@@ -44,15 +56,16 @@ public class SFSReduction {
 
     // Initialization
     List<Node<PropT>> nodes = g.getNodes();
+    NodeTable  table = new NodeTable(g);
+    int[]      prevColor = table.ints(1);
+    int[]      currColor = table.ints(0);
 
     for (Node<PropT> currNode: nodes) {
-      currNode.setIntAttribute("_prevColor", 1);
-
       if (isAccepting(currNode)) {
-        currNode.setIntAttribute("_currColor", 1);
+        currColor[NodeTable.index(currNode)] = 1;
         accepting = true;
       } else {
-        currNode.setIntAttribute("_currColor", 2);
+        currColor[NodeTable.index(currNode)] = 2;
         nonaccepting = true;
       }
     }
@@ -78,11 +91,10 @@ public class SFSReduction {
     }
 
     while ((currNumColors != prevNumColors) || (currNumPO != prevNumPO)) {
+      budget.check();
+
       // Incrementing i, equiv. current values become previous ones
-      for (Node<PropT> currNode: nodes) {
-        currNode.setIntAttribute("_prevColor", 
-                                 currNode.getIntAttribute("_currColor"));
-      }
+      System.arraycopy(currColor, 0, prevColor, 0, prevColor.length);
 
       prevPO = currPO;
       prevNumColors = currNumColors;
@@ -93,9 +105,9 @@ public class SFSReduction {
       newColorSet = new TreeSet<ColorPair<PropT>>(); // keeps set of new colors
 
       for (Node<PropT> currNode: nodes) {
-        ColorPair<PropT> currPair = new ColorPair<PropT>(currNode.getIntAttribute(
-                                                 "_prevColor"), 
-                                           getPrevN(currNode, prevPO));
+        ColorPair<PropT> currPair = new ColorPair<PropT>(
+                                          prevColor[NodeTable.index(currNode)],
+                                          getPrevN(currNode, prevColor, prevPO));
 
 
         /*    System.out.println("Transition set from node: " + currNode.getId()
@@ -117,8 +129,7 @@ public class SFSReduction {
       // Renaming color set
       for (Pair<ColorPair<PropT>> cPair: newColorList) {
         ColorPair<PropT> currPair = cPair.getElement();
-        g.getNode(cPair.getValue())
-         .setIntAttribute("_currColor", ordered.indexOf(currPair) + 1);
+        currColor[cPair.getValue()] = ordered.indexOf(currPair) + 1;
       }
 
 
@@ -128,6 +139,7 @@ public class SFSReduction {
       currPO = new boolean[currNumColors][currNumColors];
 
       for (Pair<ColorPair<PropT>> currPairOneP: newColorList) {
+        budget.check();
         ColorPair<PropT> currPairOne = currPairOneP.getElement ();
         for (Pair<ColorPair<PropT>> currPairTwoP: newColorList) {
           ColorPair<PropT> currPairTwo = currPairTwoP.getElement ();
@@ -189,7 +201,7 @@ public class SFSReduction {
 
           // accepting node
           if (isAccepting(g.getNode(origNodeId))) {
-            currNode.setBooleanAttribute("accepting", true);
+            currNode.setAccepting(true);
           }
         } else {
         } // ignore such transitions
@@ -202,20 +214,20 @@ public class SFSReduction {
   }
 
   private static <PropT> boolean isAccepting (Node<PropT> nodeIn) {
-    return (nodeIn.getBooleanAttribute("accepting"));
+    return (nodeIn.isAccepting());
   }
 
   private static <PropT> TreeSet<ITypeNeighbor<PropT>> getPrevN (
-      Node<PropT> currNode, boolean[][] prevPO) {
+      Node<PropT> currNode, int[] prevColor, boolean[][] prevPO) {
     List<Edge<PropT>>     edges = currNode.getOutgoingEdges();
     LinkedList<ITypeNeighbor<PropT>> neighbors = new LinkedList<ITypeNeighbor<PropT>>();
     ITypeNeighbor<PropT> iNeigh;
     TreeSet<ITypeNeighbor<PropT>> prevN = new TreeSet<ITypeNeighbor<PropT>>();
 
     for (Edge<PropT> currEdge: edges) {
-      iNeigh = new ITypeNeighbor<PropT>(currEdge.getNext()
-                                         .getIntAttribute("_prevColor"), 
-                                        currEdge.getGuard());
+      iNeigh = new ITypeNeighbor<PropT>(
+                 prevColor[NodeTable.index(currEdge.getNext())],
+                 currEdge.getGuard());
       neighbors.add(iNeigh);
     }
 
@@ -322,7 +334,7 @@ public class SFSReduction {
     }
 
     if (g.getNodes() != null) {
-      for (Node<PropT> n: g.getNodes ()) {
+      for (Node<PropT> n: g.getNodeSnapshot ()) {
         if (!reachable.contains(n)) {
           g.removeNode(n);
         }
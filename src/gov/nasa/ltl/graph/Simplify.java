@@ -18,28 +18,48 @@
 //
 package gov.nasa.ltl.graph;
 
+import java.util.List;
+
 
 /**
  * DOCUMENT ME!
  */
 public class Simplify {
   public static <PropT> Graph<PropT> simplify (Graph<PropT> g) {
+    return simplify (g, Budget.UNLIMITED);
+  }
+
+  /**
+   * Merges bisimilar nodes of g, which is modified in place. The budget
+   * is checked between merges, so if it runs out g is left partly
+   * simplified, but still equivalent to what it was.
+   * @param g
+   * @param budget
+   * @return g
+   */
+  public static <PropT> Graph<PropT> simplify (Graph<PropT> g,
+                                               Budget budget) {
     boolean simplified;
 
     do {
       simplified = false;
-      for (Node<PropT> n0: g.getNodes ()) {
-        for (Node<PropT> n1: g.getNodes ()) { // getNodes() copies list
+      List<Node<PropT>> nodes = g.getNodes ();
+      for (Node<PropT> n0: g.getNodeSnapshot ()) {
+        budget.check ();
+        // by index, as nodes shrinks when n1 is removed
+        for (int i = 0; i < nodes.size (); i++) {
+          Node<PropT> n1 = nodes.get (i);
           if (n1.getId() <= n0.getId())
             continue;
-          if (n1.getBooleanAttribute("accepting") !=
-              n0.getBooleanAttribute("accepting"))
+          if (n1.isAccepting() !=
+              n0.isAccepting())
             continue;
           if (equivalentCheck (n0, n1) && equivalentCheck (n1, n0)) {
             for (Edge<PropT> e: n1.getIncomingEdges ())
               new Edge<PropT>(e.getSource(), n0, e.getGuard(), e.getAction(), 
                        e.getAttributes());
             n1.remove();
+            i--;
             simplified = true;
           }
         }
@@ -44,11 +44,9 @@ public class SuperSetReduction {
       g.forAllNodes(new EmptyVisitor<PropT>() {
         public void visitNode (Node<PropT> n) {
           for (int i = 0; i < nsets; i++) {
-            String acc = "acc" + i;
-
-            if (n.getBooleanAttribute(acc)) {
+            if (n.isAccepting(i)) {
               asets_[i][n.getId()] = true;
-              n.setBooleanAttribute(acc, false);
+              n.setAccepting(i, false);
             }
           }
         }
@@ -68,11 +66,9 @@ public class SuperSetReduction {
           edges_[id] = e;
 
           for (int i = 0; i < nsets; i++) {
-            String acc = "acc" + i;
-
-            if (e.getBooleanAttribute(acc)) {
+            if (e.isAccepting(i)) {
               asets_[i][id] = true;
-              e.setBooleanAttribute(acc, false);
+              e.setAccepting(i, false);
             }
           }
         }
@@ -117,7 +113,7 @@ public class SuperSetReduction {
 
         for (int j = 0; j < n_nsets; j++) {
           if (n_asets[j][i]) {
-            n.setBooleanAttribute("acc" + j, true);
+            n.setAccepting(j, true);
           }
         }
       }
@@ -127,7 +123,7 @@ public class SuperSetReduction {
 
         for (int j = 0; j < n_nsets; j++) {
           if (n_asets[j][i]) {
-            e.setBooleanAttribute("acc" + j, true);
+            e.setAccepting(j, true);
           }
         }
       }
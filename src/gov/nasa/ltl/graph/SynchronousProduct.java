@@ -25,6 +25,18 @@ package gov.nasa.ltl.graph;
 public class SynchronousProduct {
   public static <PropT1, PropT2> void dfs (Graph<PropT1> g,
       Node<PropT1>[][] nodes, int nsets, Node<PropT1> n0, Node<PropT2> n1) {
+    dfs(g, nodes, nsets, n0, n1, Budget.UNLIMITED, 0);
+  }
+
+  /**
+   * Builds the part of the product reachable from (n0, n1).
+   * @param budget edge limit, checked as every edge is added
+   * @param edges number of edges of g so far
+   * @return number of edges of g afterwards
+   */
+  private static <PropT1, PropT2> int dfs (Graph<PropT1> g,
+      Node<PropT1>[][] nodes, int nsets, Node<PropT1> n0, Node<PropT2> n1,
+      Budget budget, int edges) {
     Node<PropT1> n = get(g, nodes, n0, n1);
 
     for (Edge<PropT1> e0: n0.getOutgoingEdges ()) {
@@ -45,8 +57,8 @@ public class SynchronousProduct {
           found = true;
 
           for (int i = 0; i < nsets; i++) {
-            boolean b0 = e0.getBooleanAttribute("acc" + i);
-            boolean b1 = e1.getBooleanAttribute("acc" + i);
+            boolean b0 = e0.isAccepting(i);
+            boolean b1 = e1.isAccepting(i);
 
             if (b1 && !b0) { // corrected by Dimitra
               found = false;
@@ -67,17 +79,35 @@ public class SynchronousProduct {
         Node<PropT1> next = get(g, nodes, next0, next1);
         // for side-effect in constructor:
         new Edge<PropT1>(n, next, e0.getGuard(), theEdge.getAction(), null);
+        budget.checkEdges(++edges);
 
         if (newNext) {
-          dfs(g, nodes, nsets, next0, next1);
+          edges = dfs(g, nodes, nsets, next0, next1, budget, edges);
         }
       }
     }
+
+    return edges;
   }
 
-  @SuppressWarnings ("unchecked")
   public static <PropT1, PropT2> Graph<PropT1> product (Graph<PropT1> g0,
                                                         Graph<PropT2> g1) {
+    return product(g0, g1, Budget.UNLIMITED);
+  }
+
+  /**
+   * Same as {@link #product(Graph, Graph)}, checking the budget's edge
+   * limit as every edge of the product is added.
+   * @param g0
+   * @param g1
+   * @param budget
+   * @return product of g0 and g1
+   * @throws BudgetExceededException
+   */
+  @SuppressWarnings ("unchecked")
+  public static <PropT1, PropT2> Graph<PropT1> product (Graph<PropT1> g0,
+                                                        Graph<PropT2> g1,
+                                                        Budget budget) {
     int nsets = g0.getIntAttribute("nsets");
 
     if (nsets != g1.getIntAttribute("nsets")) {
@@ -92,7 +122,7 @@ public class SynchronousProduct {
 
     nodes = (Node<PropT1>[][])new Node[g0.getNodeCount()][g1.getNodeCount()];
 
-    dfs(g, nodes, nsets, g0.getInit(), g1.getInit());
+    dfs(g, nodes, nsets, g0.getInit(), g1.getInit(), budget, 0);
 
     return g;
   }
@@ -119,8 +149,8 @@ public class SynchronousProduct {
 
       n.setStringAttribute("label", label0 + "+" + label1);
 
-      if (n1.getBooleanAttribute("accepting")) {
-        n.setBooleanAttribute("accepting", true);
+      if (n1.isAccepting()) {
+        n.setAccepting(true);
       }
 
       return nodes[n0.getId()][n1.getId()] = n;
@@ -0,0 +1,202 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+// 
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+// 
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.ltl.graph;
+
+import java.util.BitSet;
+import java.util.Hashtable;
+import java.util.Map;
+
+/**
+ * Attributes of a {@link Node} or {@link Edge}. The ones the algorithms
+ * use all the time, the node ID "_id", "accepting" and the acceptance
+ * sets "acc0", "acc1", ..., are kept in fields rather than as strings.
+ * They can still be read and written by name, and {@link #getAll()}
+ * includes them, so that they look the same as before to writers.
+ */
+class TypedAttributes extends Attributes {
+  private final boolean hasId;
+  int id = 0;
+  boolean accepting = false;
+  final BitSet acceptance = new BitSet();
+
+  /**
+   * @param hasId whether "_id" is the ID of a node
+   */
+  TypedAttributes (boolean hasId) {
+    this.hasId = hasId;
+  }
+
+  /**
+   * @param a attributes to copy
+   * @param hasId whether "_id" is the ID of a node
+   */
+  TypedAttributes (Attributes a, boolean hasId) {
+    this(hasId);
+    for (Map.Entry<Object, String> e: a.getAll().entrySet()) {
+      setString(e.getKey().toString(), e.getValue());
+    }
+  }
+
+  private boolean isId (String name) {
+    return hasId && name.equals("_id");
+  }
+
+  /**
+   * @param name
+   * @return i if name is "acc" followed by i in decimal, -1 else
+   */
+  private static int accIndex (String name) {
+    int n = name.length();
+
+    if (n < 4 || n > 12 || !name.startsWith("acc") ||
+        (name.charAt(3) == '0' && n > 4)) {
+      return -1;
+    }
+    int i = 0;
+    for (int k = 3; k < n; k++) {
+      char c = name.charAt(k);
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+      i = i * 10 + (c - '0');
+    }
+    return i;
+  }
+
+  @Override
+  public void setBoolean (String name, boolean value) {
+    int i;
+
+    if (name.equals("accepting")) {
+      accepting = value;
+    } else if ((i = accIndex(name)) >= 0) {
+      acceptance.set(i, value);
+    } else if (isId(name)) {
+      id = 0;
+    } else {
+      super.setBoolean(name, value);
+    }
+  }
+
+  @Override
+  public boolean getBoolean (String name) {
+    int i;
+
+    if (name.equals("accepting")) {
+      return accepting;
+    } else if ((i = accIndex(name)) >= 0) {
+      return acceptance.get(i);
+    } else if (isId(name)) {
+      return true;
+    } else {
+      return super.getBoolean(name);
+    }
+  }
+
+  @Override
+  public void setInt (String name, int value) {
+    if (isId(name)) {
+      id = value;
+    } else {
+      setString(name, Integer.toString(value));
+    }
+  }
+
+  @Override
+  public int getInt (String name) {
+    if (isId(name)) {
+      return id;
+    } else if (name.equals("accepting") || accIndex(name) >= 0) {
+      return 0;
+    } else {
+      return super.getInt(name);
+    }
+  }
+
+  @Override
+  public void setString (String name, String value) {
+    int i;
+
+    if (value == null) {
+      throw new NullPointerException();
+    } else if (name.equals("accepting")) {
+      accepting = true;
+    } else if ((i = accIndex(name)) >= 0) {
+      acceptance.set(i);
+    } else if (isId(name)) {
+      try {
+        id = Integer.parseInt(value);
+      } catch (NumberFormatException e) {
+        id = 0;
+      }
+    } else {
+      super.setString(name, value);
+    }
+  }
+
+  @Override
+  public String getString (String name) {
+    if (isId(name)) {
+      return Integer.toString(id);
+    } else if (name.equals("accepting") || accIndex(name) >= 0) {
+      return getBoolean(name) ? "" : null;
+    } else {
+      return super.getString(name);
+    }
+  }
+
+  @Override
+  public void unset (String name) {
+    setBoolean(name, false);
+  }
+
+  /**
+   * @return the attributes which are not kept in fields, or null if
+   *    there are none
+   */
+  Attributes getUntyped () {
+    Hashtable<Object, String> ht = super.copy();
+
+    if (ht.isEmpty()) {
+      return null;
+    }
+    Attributes a = new Attributes();
+    for (Map.Entry<Object, String> e: ht.entrySet()) {
+      a.setString(e.getKey().toString(), e.getValue());
+    }
+    return a;
+  }
+
+  @Override
+  Hashtable<Object, String> copy () {
+    Hashtable<Object, String> ht = super.copy();
+
+    if (hasId) {
+      ht.put("_id", Integer.toString(id));
+    }
+    if (accepting) {
+      ht.put("accepting", "");
+    }
+    for (int i = acceptance.nextSetBit(0); i >= 0;
+         i = acceptance.nextSetBit(i + 1)) {
+      ht.put("acc" + i, "");
+    }
+    return ht;
+  }
+}
@@ -52,8 +52,8 @@ public class degenSynchronousProduct {
             if (i >= n1id) // ignore bits before lower bound 
             {
               // dimitra's code ends here 
-              boolean b0 = e0.getBooleanAttribute("acc" + i);
-              boolean b1 = e1.getBooleanAttribute("acc" + i);
+              boolean b0 = e0.isAccepting(i);
+              boolean b1 = e1.isAccepting(i);
 
               if (b1 && !b0) { // corrected by Dimitra
                 found = false;
@@ -127,8 +127,8 @@ public class degenSynchronousProduct {
 
       n.setStringAttribute("label", label0 + "+" + label1);
 
-      if (n1.getBooleanAttribute("accepting")) {
-        n.setBooleanAttribute("accepting", true);
+      if (n1.isAccepting()) {
+        n.setAccepting(true);
       }
 
       return nodes[n0.getId()][n1.getId()] = n;
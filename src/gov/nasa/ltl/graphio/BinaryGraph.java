@@ -0,0 +1,182 @@
+/**
+ *
+ */
+package gov.nasa.ltl.graphio;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import gov.nasa.ltl.graph.Attributes;
+import gov.nasa.ltl.graph.Edge;
+import gov.nasa.ltl.graph.Graph;
+import gov.nasa.ltl.graph.GraphBuilder;
+import gov.nasa.ltl.graph.Guard;
+import gov.nasa.ltl.graph.Literal;
+import gov.nasa.ltl.graph.Node;
+
+/**
+ * Compact binary form of a graph with String atoms, for storing
+ * automata rather than showing them. Every string (atom, action,
+ * attribute name or value) is stored once in a table and referred to
+ * by index; numbers are stored in as few bytes as they need. Nodes
+ * keep their order, so they get the same IDs when read back. The
+ * "_id" attributes are not stored, since they are derived.
+ */
+public class BinaryGraph {
+  private static final int MAGIC = 0x4C544C42; // "LTLB"
+  private static final int VERSION = 1;
+
+  /**
+   * Strings of a graph in order of first use.
+   */
+  private static class StringTable {
+    private final HashMap<String, Integer> index = new HashMap<String, Integer> ();
+    private final ArrayList<String> strings = new ArrayList<String> ();
+
+    int add (String s) {
+      Integer i = index.get (s);
+      if (i == null) {
+        i = strings.size ();
+        index.put (s, i);
+        strings.add (s);
+      }
+      return i;
+    }
+
+    void addAll (Attributes a) {
+      for (Map.Entry<Object, String> e: a.getAll ().entrySet ()) {
+        add (e.getKey ().toString ());
+        add (e.getValue ());
+      }
+    }
+  }
+
+  public static void write (Graph<String> g, OutputStream os) throws IOException {
+    DataOutputStream out = new DataOutputStream (os);
+    List<Node<String>> nodes = g.getNodes ();
+    HashMap<Node<String>, Integer> position = new HashMap<Node<String>, Integer> ();
+    StringTable table = new StringTable ();
+
+    table.addAll (g.getAttributes ());
+    for (Node<String> n: nodes) {
+      position.put (n, position.size ());
+      table.addAll (n.getAttributes ());
+      for (Edge<String> e: n.getOutgoingEdges ()) {
+        table.add (e.getAction ());
+        for (Literal<String> l: e.getGuard ())
+          table.add (l.getAtom ());
+        table.addAll (e.getAttributes ());
+      }
+    }
+
+    out.writeInt (MAGIC);
+    out.writeByte (VERSION);
+    writeNumber (out, table.strings.size ());
+    for (String s: table.strings)
+      out.writeUTF (s);
+    writeAttributes (out, table, g.getAttributes ());
+    writeNumber (out, nodes.size ());
+    writeNumber (out, g.getInit () == null ? 0 : position.get (g.getInit ()) + 1);
+    for (Node<String> n: nodes) {
+      writeAttributes (out, table, n.getAttributes ());
+      List<Edge<String>> edges = n.getOutgoingEdges ();
+      writeNumber (out, edges.size ());
+      for (Edge<String> e: edges) {
+        writeNumber (out, position.get (e.getNext ()));
+        writeNumber (out, table.add (e.getAction ()));
+        writeNumber (out, e.getGuard ().size ());
+        for (Literal<String> l: e.getGuard ())
+          writeNumber (out, table.add (l.getAtom ()) << 1 | (l.isNegated () ? 1 : 0));
+        writeAttributes (out, table, e.getAttributes ());
+      }
+    }
+    out.flush ();
+  }
+
+  public static Graph<String> read (InputStream is) throws IOException {
+    DataInputStream in = new DataInputStream (is);
+
+    if (in.readInt () != MAGIC)
+      throw new IOException ("not a binary graph");
+    if (in.readByte () != VERSION)
+      throw new IOException ("unknown binary graph version");
+    String[] strings = new String[readNumber (in)];
+    for (int i = 0; i < strings.length; i++)
+      strings[i] = in.readUTF ();
+
+    Attributes attributes = readAttributes (in, strings);
+    int nn = readNumber (in);
+    int init = readNumber (in);
+    GraphBuilder<String> g = new GraphBuilder<String> (attributes, nn, nn);
+    for (int i = 0; i < nn; i++)
+      g.addNode ();
+    for (int i = 0; i < nn; i++) {
+      g.setNodeAttributes (i, readAttributes (in, strings));
+      int ne = readNumber (in);
+      for (int j = 0; j < ne; j++) {
+        int next = readNumber (in);
+        String action = strings[readNumber (in)];
+        Guard<String> guard = new Guard<String> ();
+        int nl = readNumber (in);
+        for (int k = 0; k < nl; k++) {
+          int l = readNumber (in);
+          guard.add (new Literal<String> (strings[l >>> 1], (l & 1) != 0));
+        }
+        g.addEdge (i, next, guard, action, readAttributes (in, strings));
+      }
+    }
+    if (init > 0)
+      g.setInit (init - 1);
+
+    return g.build ();
+  }
+
+  private static void writeAttributes (DataOutputStream out, StringTable table,
+                                       Attributes a) throws IOException {
+    Map<Object, String> all = a.getAll ();
+    all.remove ("_id");
+    writeNumber (out, all.size ());
+    for (Map.Entry<Object, String> e: all.entrySet ()) {
+      writeNumber (out, table.add (e.getKey ().toString ()));
+      writeNumber (out, table.add (e.getValue ()));
+    }
+  }
+
+  private static Attributes readAttributes (DataInputStream in,
+                                            String[] strings) throws IOException {
+    Attributes a = new Attributes ();
+    int n = readNumber (in);
+    for (int i = 0; i < n; i++) {
+      String name = strings[readNumber (in)];
+      a.setString (name, strings[readNumber (in)]);
+    }
+    return a;
+  }
+
+  private static void writeNumber (DataOutputStream out, int n) throws IOException {
+    assert n >= 0 : "negative number";
+    while ((n & ~0x7F) != 0) {
+      out.writeByte ((n & 0x7F) | 0x80);
+      n >>>= 7;
+    }
+    out.writeByte (n);
+  }
+
+  private static int readNumber (DataInputStream in) throws IOException {
+    int n = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      int b = in.readUnsignedByte ();
+      n |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0)
+        return n;
+    }
+    throw new IOException ("malformed number");
+  }
+}
@@ -5,8 +5,10 @@ package gov.nasa.ltl.graphio;
 
 import java.io.PrintStream;
 
+import gov.nasa.ltl.graph.CompactGraph;
 import gov.nasa.ltl.graph.Edge;
 import gov.nasa.ltl.graph.Graph;
+import gov.nasa.ltl.graph.Guard;
 import gov.nasa.ltl.graph.Node;
 import gov.nasa.ltl.trans.State;
 import gov.nasa.ltl.trans.Transition;
@@ -40,7 +42,7 @@ class FSPWriter<PropT> extends SMWriter<PropT> {
       for (int i = 0; i < g.getIntAttribute ("nsets"); i++) {
         out.print ("AS" + i + " = { ");
         for (Node<PropT> n: g.getNodes ()) {
-          if (!n.getBooleanAttribute ("acc" + i))
+          if (!n.isAccepting (i))
             continue;
           if (!first)
             out.print (", ");
@@ -52,7 +54,7 @@ class FSPWriter<PropT> extends SMWriter<PropT> {
     } else { // ba?
       out.print ("AS = { ");
       for (Node<PropT> n: g.getNodes ()) {
-        if (!n.getBooleanAttribute ("accepting"))
+        if (!n.isAccepting ())
           continue;
         if (!first)
           out.print (", ");
@@ -63,6 +65,82 @@ class FSPWriter<PropT> extends SMWriter<PropT> {
     }
   }
 
+  /* (non-Javadoc)
+   * @see gov.nasa.ltl.graphio.Writer#write(gov.nasa.ltl.graph.CompactGraph)
+   */
+  @Override
+  public void write (CompactGraph<PropT> g) {
+    int nsets = g.getIntAttribute ("nsets");
+    boolean first = true;
+    if (g.getInit () < 0) {
+      out.print ("Empty");
+      return;
+    }
+    out.print ("RES = S" + g.getId (g.getInit ()));
+    for (int s = 0; s < g.getStateCount (); s++) {
+      out.println (',');
+      out.print ("S" + g.getId (s) + "=(");
+      for (int e = g.getFirstEdge (s); e < g.getEndEdge (s); e++) {
+        if (e != g.getFirstEdge (s))
+          out.print (" |");
+        write (g, e, nsets);
+      }
+      out.print (')');
+    }
+    out.println ('.');
+    if (nsets != 0) { // gba?
+      for (int i = 0; i < nsets; i++) {
+        out.print ("AS" + i + " = { ");
+        for (int s = 0; s < g.getStateCount (); s++) {
+          if (!g.isAccepting (s, i))
+            continue;
+          if (!first)
+            out.print (", ");
+          first = false;
+          out.print ("S" + g.getId (s));
+        }
+        out.println (" }");
+      }
+    } else { // ba?
+      out.print ("AS = { ");
+      for (int s = 0; s < g.getStateCount (); s++) {
+        if (!g.isAccepting (s))
+          continue;
+        if (!first)
+          out.print (", ");
+        first = false;
+        out.print ("S" + g.getId (s));
+      }
+      out.println (" }");
+    }
+  }
+
+  private void write (CompactGraph<PropT> g, int e, int nsets) {
+    Guard<PropT> guard = g.getGuard (e);
+    boolean first = true;
+    if (guard.isTrue ())
+      out.print ("TRUE");
+    else
+      write (guard);
+    if (nsets != 0) {
+      for (int i = 0; i < nsets; i++) {
+        if (g.isEdgeAccepting (e, i)) {
+          if (first)
+            out.print ('{');
+          else
+            out.print (',');
+          first = false;
+          out.print (i);
+        }
+      }
+      if (!first)
+        out.print ('}');
+    } else
+      if (g.isEdgeAccepting (e))
+        out.print ('@');
+    out.print ("-> S" + g.getId (g.getTarget (e)));
+  }
+
   /* (non-Javadoc)
    * @see gov.nasa.ltl.graphio.Writer#write(gov.nasa.ltl.graph.Node)
    */
@@ -92,7 +170,7 @@ class FSPWriter<PropT> extends SMWriter<PropT> {
       write (e.getGuard ());
     if (nsets != 0) {
       for (int i = 0; i < nsets; i++) {
-        if (e.getBooleanAttribute ("acc" + i)) {
+        if (e.isAccepting (i)) {
           if (first)
             out.print ('{');
           else
@@ -104,7 +182,7 @@ class FSPWriter<PropT> extends SMWriter<PropT> {
       if (!first)
         out.print ('}');
     } else
-      if (e.getBooleanAttribute ("accepting"))
+      if (e.isAccepting ())
         out.print ('@');
     out.print ("-> S" + e.getNext ().getId ());
   }
@@ -5,6 +5,7 @@ package gov.nasa.ltl.graphio;
 
 import java.io.PrintStream;
 
+import gov.nasa.ltl.graph.CompactGraph;
 import gov.nasa.ltl.graph.Edge;
 import gov.nasa.ltl.graph.Graph;
 import gov.nasa.ltl.graph.Guard;
@@ -44,12 +45,73 @@ class SpinWriter<PropT> extends Writer<PropT> {
     out.println ("}");
   }
 
+  /* (non-Javadoc)
+   * @see gov.nasa.ltl.graphio.Writer#write(gov.nasa.ltl.graph.CompactGraph)
+   */
+  @Override
+  public void write (CompactGraph<PropT> g) {
+    int nsets = g.getIntAttribute ("nsets");
+    if (g.getInit () < 0) {
+      out.println ("Empty");
+      return;
+    }
+    out.println ("never {");
+    write (g, g.getInit (), nsets);
+    for (int s = 0; s < g.getStateCount (); s++) {
+      if (s == g.getInit ())
+        continue;
+      write (g, s, nsets);
+      out.println ();
+    }
+    out.println ("}");
+  }
+
+  private void write (CompactGraph<PropT> g, int s, int nsets) {
+    if (g.isAccepting (s))
+      out.print ("accept_");
+    out.println ("S" + g.getId (s) + ":");
+    out.println ("     if");
+    for (int e = g.getFirstEdge (s); e < g.getEndEdge (s); e++) {
+      out.print ("     :: ");
+      out.print ('(');
+      write (g.getGuard (e));
+      out.print (") ");
+      if (nsets == 0)
+        if (g.isEdgeAccepting (e))
+          out.print ('@');
+        else
+          /* nothing */;
+      else {
+        boolean first = true;
+
+        for (int i = 0; i < nsets; i++) {
+          if (!g.isEdgeAccepting (e, i))
+            continue;
+          if (first) {
+            out.print ('{');
+            first = false;
+          }
+          else
+            out.print (',');
+          out.print (i);
+        }
+        if (!first)
+          out.print ('}');
+      }
+      out.print ("-> goto ");
+      if (g.isAccepting (g.getTarget (e)))
+        out.print ("accept_");
+      out.println ("S" + g.getId (g.getTarget (e)));
+    }
+    out.println ("     fi;");
+  }
+
   /* (non-Javadoc)
    * @see gov.nasa.ltl.graphio.Writer#write(gov.nasa.ltl.graph.Node)
    */
   @Override
   public void write (Node<PropT> n) {
-    if (n.getBooleanAttribute ("accepting"))
+    if (n.isAccepting ())
       out.print ("accept_");
     out.println ("S" + n.getId () + ":");
     out.println ("     if");
@@ -71,7 +133,7 @@ class SpinWriter<PropT> extends Writer<PropT> {
     write (e.getGuard ());
     out.print (") ");
     if (nsets == 0)
-      if (e.getBooleanAttribute ("accepting"))
+      if (e.isAccepting ())
         out.print ('@');
       else
         /* nothing */;
@@ -79,7 +141,7 @@ class SpinWriter<PropT> extends Writer<PropT> {
       boolean first = true;
       
       for (int i = 0; i < nsets; i++) {
-        if (!e.getBooleanAttribute ("acc" + i))
+        if (!e.isAccepting (i))
           continue;
         if (first) {
           out.print ('{');
@@ -93,7 +155,7 @@ class SpinWriter<PropT> extends Writer<PropT> {
         out.print ('}');
     }
     out.print ("-> goto ");
-    if (e.getNext ().getBooleanAttribute ("accepting"))
+    if (e.getNext ().isAccepting ())
       out.print ("accept_");
     out.println ("S" + e.getNext ().getId ());
   }
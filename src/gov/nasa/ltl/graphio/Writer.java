@@ -5,6 +5,7 @@ package gov.nasa.ltl.graphio;
 
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
+import gov.nasa.ltl.graph.CompactGraph;
 import gov.nasa.ltl.graph.Guard;
 import gov.nasa.ltl.graph.Literal;
 import gov.nasa.ltl.graph.Edge;
@@ -28,6 +29,15 @@ public abstract class Writer<PropT> {
    * @param g graph
    */
   public abstract void write (Graph<PropT> g);
+  /**
+   * Print a compact graph in some data format. Unless the format has
+   * its own way of doing so, the graph is converted to a {@link Graph}
+   * first.
+   * @param g graph
+   */
+  public void write (CompactGraph<PropT> g) {
+    write (g.toGraph ());
+  }
   /**
    * Print a vertex in some data format.
    * @param n vertex
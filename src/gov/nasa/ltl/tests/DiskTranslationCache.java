@@ -0,0 +1,85 @@
+/**
+ *
+ */
+package gov.nasa.ltl.tests;
+
+import gov.nasa.ltl.graph.Graph;
+import gov.nasa.ltl.graphio.Writer;
+import gov.nasa.ltl.trans.FormulaFactory;
+import gov.nasa.ltl.trans.LTL2Buchi;
+import gov.nasa.ltl.trans.ParseErrorException;
+import gov.nasa.ltl.trans.Parser;
+import gov.nasa.ltl.trans.TranslationOptions;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+
+/**
+ * Test for {@link gov.nasa.ltl.trans.DiskTranslationCache}. Translates
+ * pairs of formulae through one cache in a fresh directory and checks
+ * that every result equals a direct translation. The pairs include
+ * formulae whose atoms print like other formulae, e. g. a /\ b and the
+ * atom "( a ) /\ ( b )", which must not share a cache entry, and
+ * formulae which differ only in spacing, which must.
+ * <p>
+ * Usage: <code>java gov.nasa.ltl.tests.DiskTranslationCache</code>.
+ * Mismatches are printed to standard error, and the exit status is the
+ * number of them.
+ */
+public class DiskTranslationCache {
+  private static final String[][] pairs = {
+    // different formulae with the same printed form
+    { "[](a /\\ b)", "[]\"( a ) /\\ ( b )\"" },
+    { "a U b", "\"( a ) U ( b )\"" },
+    { "X a", "\"( X ( a ) )\"" },
+    { "\"a:1\" /\\ b", "a /\\ \"1:b\"" },
+    // the same formula
+    { "a U b", "a   U b" },
+    { "\"a\" V b", "a V b" },
+  };
+
+  public static void main (String[] args)
+      throws IOException, ParseErrorException {
+    File dir = Files.createTempDirectory ("ltlcache").toFile ();
+    int failures = 0, shared = 0;
+
+    try {
+      gov.nasa.ltl.trans.DiskTranslationCache cache =
+        new gov.nasa.ltl.trans.DiskTranslationCache (
+          dir, gov.nasa.ltl.trans.DiskTranslationCache.DEFAULT_MAX_BYTES);
+      for (String[] p: pairs) {
+        for (String f: p) {
+          String expected = show (LTL2Buchi.translate (
+            Parser.parse (f, new FormulaFactory ()),
+            TranslationOptions.DEFAULT));
+          String result = show (cache.translate (f,
+                                                 TranslationOptions.DEFAULT));
+          if (!expected.equals (result)) {
+            System.err.println ("Cached automaton for " + f +
+                                " differs:\n" + expected + "----\n" + result);
+            failures++;
+          }
+        }
+      }
+      shared = (int)cache.getHits ();
+    } finally {
+      for (File f: dir.listFiles ())
+        f.delete ();
+      dir.delete ();
+    }
+    System.out.println (pairs.length + " pairs, " + shared +
+                        " cache hits, " + failures + " mismatches");
+    System.exit (failures);
+  }
+
+  private static String show (Graph<String> g) {
+    ByteArrayOutputStream s = new ByteArrayOutputStream ();
+    PrintStream p = new PrintStream (s);
+    Writer.<String>getWriter (Writer.Format.SPIN, p).write (g);
+    p.flush ();
+    return s.toString ();
+  }
+}
@@ -0,0 +1,116 @@
+/**
+ *
+ */
+package gov.nasa.ltl.tests;
+
+import gov.nasa.ltl.graph.CompactGraph;
+import gov.nasa.ltl.graph.Graph;
+import gov.nasa.ltl.graphio.BinaryGraph;
+import gov.nasa.ltl.graphio.Writer;
+import gov.nasa.ltl.trans.Formula;
+import gov.nasa.ltl.trans.FormulaFactory;
+import gov.nasa.ltl.trans.LTL2Buchi;
+import gov.nasa.ltl.trans.TranslationOptions;
+import gov.nasa.ltl.trans.Translator;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Random;
+
+/**
+ * Round-trip test for {@link BinaryGraph} and {@link CompactGraph}.
+ * Translates random formulae and converts both the generalized and the
+ * final automaton to binary form and to a compact graph and back, then
+ * compares the output of every {@link Writer} format for the original
+ * and the copies. The compact graph is also written directly.
+ * <p>
+ * Usage: <code>java gov.nasa.ltl.tests.GraphRoundTrip [n [seed]]</code>
+ * translates n formulae (default 500). Mismatches are printed to
+ * standard error, and the exit status is the number of them.
+ */
+public class GraphRoundTrip {
+  private static Random rand;
+  private static int failures = 0;
+
+  public static void main (String[] args) throws IOException {
+    int n = args.length > 0 ? Integer.parseInt (args[0]) : 500;
+    long seed = args.length > 1 ? Long.parseLong (args[1]) : System.nanoTime ();
+    rand = new Random (seed);
+    for (int i = 0; i < n; i++) {
+      FormulaFactory factory = new FormulaFactory ();
+      Formula<String> f = randomFormula (factory, 4);
+      compare (f + " (generalized)", Translator.translate (f));
+      compare (f.toString (),
+               LTL2Buchi.translate (f, TranslationOptions.DEFAULT));
+    }
+    System.out.println (n + " formulae, seed " + seed + ", " + failures +
+                        " mismatches");
+    System.exit (failures);
+  }
+
+  private static Formula<String> randomFormula (FormulaFactory factory,
+                                                int depth) {
+    if (depth == 0 || rand.nextInt (4) == 0)
+      return factory.Proposition ("p" + rand.nextInt (3));
+    Formula<String> s1 = randomFormula (factory, depth - 1);
+    switch (rand.nextInt (8)) {
+    case 0:
+      return factory.Not (s1);
+    case 1:
+      return factory.Next (s1);
+    case 2:
+      return factory.Until (s1, randomFormula (factory, depth - 1));
+    case 3:
+      return factory.Release (s1, randomFormula (factory, depth - 1));
+    case 4:
+      return factory.WUntil (s1, randomFormula (factory, depth - 1));
+    case 5:
+      return factory.Or (s1, randomFormula (factory, depth - 1));
+    default:
+      return factory.And (s1, randomFormula (factory, depth - 1));
+    }
+  }
+
+  private static void compare (String what, Graph<String> g)
+      throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream ();
+    BinaryGraph.write (g, bytes);
+    Graph<String> copy = BinaryGraph.read (
+        new ByteArrayInputStream (bytes.toByteArray ()));
+    CompactGraph<String> compact = new CompactGraph<String> (g);
+    for (Writer.Format format: Writer.Format.values ()) {
+      String expected = show (format, g);
+      check (what + ", binary, " + format, expected, show (format, copy));
+      check (what + ", compact, " + format, expected,
+             show (format, compact.toGraph ()));
+      check (what + ", written compact, " + format, expected,
+             show (format, compact));
+    }
+  }
+
+  private static void check (String what, String expected, String result) {
+    if (!expected.equals (result)) {
+      System.err.println ("Mismatch for " + what + ":\n" + expected +
+                          "----\n" + result);
+      failures++;
+    }
+  }
+
+  private static String show (Writer.Format format, Graph<String> g) {
+    ByteArrayOutputStream s = new ByteArrayOutputStream ();
+    PrintStream p = new PrintStream (s);
+    Writer.<String>getWriter (format, p).write (g);
+    p.flush ();
+    return s.toString ();
+  }
+
+  private static String show (Writer.Format format, CompactGraph<String> g) {
+    ByteArrayOutputStream s = new ByteArrayOutputStream ();
+    PrintStream p = new PrintStream (s);
+    Writer.<String>getWriter (format, p).write (g);
+    p.flush ();
+    return s.toString ();
+  }
+}
@@ -0,0 +1,105 @@
+/**
+ * 
+ */
+package gov.nasa.ltl.tests;
+
+import gov.nasa.ltl.trans.Formula;
+import gov.nasa.ltl.trans.FormulaFactory;
+import gov.nasa.ltl.trans.ParseErrorException;
+
+/**
+ * Regression test for {@link gov.nasa.ltl.trans.Parser}. Parses a
+ * fixed set of formulae, each with a fresh {@link FormulaFactory}, and
+ * compares the printed result, or the error message, with the
+ * expected one. The expected forms were printed by the recursive
+ * descent parser the current one replaced. Operands of /\ and \/ are
+ * printed in the order the factory keeps them, so they depend on the
+ * order in which subformulae are created, which is checked as well.
+ * <p>
+ * Usage: <code>java gov.nasa.ltl.tests.Parser</code>. Mismatches are
+ * printed to standard error, and the exit status is the number of
+ * them.
+ */
+public class Parser {
+  private static final String[][] cases = {
+    // precedence, strongest first: prefix operators, U V W M, /\, \/, ->
+    { "a", "( a )" },
+    { "a /\\ b \\/ c", "( ( ( a ) /\\ ( b ) ) \\/ ( c ) )" },
+    { "a \\/ b /\\ c", "( ( a ) \\/ ( ( b ) /\\ ( c ) ) )" },
+    { "a && b || c", "( ( ( a ) /\\ ( b ) ) \\/ ( c ) )" },
+    { "a || b && c", "( ( a ) \\/ ( ( b ) /\\ ( c ) ) )" },
+    { "!a U b", "( ( ! ( a ) ) U ( b ) )" },
+    { "! a /\\ b", "( ( ! ( a ) ) /\\ ( b ) )" },
+    { "X a /\\ b", "( ( X ( a ) ) /\\ ( b ) )" },
+    { "X X a", "( X ( X ( a ) ) )" },
+    { "!!a", "( a )" },
+    { "[] a -> <> b", "( ( ( true ) U ( b ) ) \\/ ( ( true ) U ( ! ( a ) ) ) )" },
+    { "<>[]a", "( ( true ) U ( ( false ) V ( a ) ) )" },
+    { "[]<>(a -> X b)", "( ( false ) V ( ( true ) U ( ( X ( b ) ) \\/ ( ! ( a ) ) ) ) )" },
+    { "a U b /\\ c", "( ( ( a ) U ( b ) ) /\\ ( c ) )" },
+    { "a /\\ b U c", "( ( a ) /\\ ( ( b ) U ( c ) ) )" },
+    { "a \\/ b -> c", "( ( c ) \\/ ( ( ! ( a ) ) /\\ ( ! ( b ) ) ) )" },
+    { "a -> b \\/ c", "( ( ( b ) \\/ ( c ) ) \\/ ( ! ( a ) ) )" },
+    { "a M b", "( ( b ) U ( ( a ) /\\ ( b ) ) )" },
+    // binary operators associate to the right
+    { "a -> b -> c", "( ( ( c ) \\/ ( ! ( b ) ) ) \\/ ( ! ( a ) ) )" },
+    { "a -> (b -> c)", "( ( ( c ) \\/ ( ! ( b ) ) ) \\/ ( ! ( a ) ) )" },
+    { "(a -> b) -> c", "( ( c ) \\/ ( ( a ) /\\ ( ! ( b ) ) ) )" },
+    { "a U b U c", "( ( a ) U ( ( b ) U ( c ) ) )" },
+    { "a V b V c", "( ( a ) V ( ( b ) V ( c ) ) )" },
+    { "a W b W c", "( ( a ) W ( ( b ) W ( c ) ) )" },
+    { "a U b V c", "( ( a ) U ( ( b ) V ( c ) ) )" },
+    { "a /\\ b /\\ c", "( ( a ) /\\ ( ( b ) /\\ ( c ) ) )" },
+    { "a \\/ b \\/ c", "( ( a ) \\/ ( ( b ) \\/ ( c ) ) )" },
+    // atoms and parentheses; text after the outermost ) is ignored
+    { "(a \\/ b) /\\ c", "( ( ( a ) \\/ ( b ) ) /\\ ( c ) )" },
+    { "((a))", "( a )" },
+    { "true U false", "( ( true ) U ( false ) )" },
+    { "\"x y\" /\\ b", "( ( x y ) /\\ ( b ) )" },
+    { "a_1 U b2", "( ( a_1 ) U ( b2 ) )" },
+    { "a) /\\ b", "( a )" },
+    // errors
+    { "", "error: unexpected end of input" },
+    { "a /\\", "error: unexpected end of input" },
+    { "a /", "error: unexpected end of input" },
+    { "a \\ b", "error: expected /" },
+    { "(a", "error: unexpected end of input" },
+    { "a b", "error: invalid character: b" },
+    { "U a", "error: invalid character: U" },
+    { "[a", "error: expected ]" },
+    { "<a", "error: expected >" },
+    { "a & b", "error: expected &&" },
+    { "a | b", "error: expected ||" },
+    { "a - b", "error: expected >" },
+    { "\"abc", "error: unexpected end of input" },
+    { "#", "error: invalid character: #" },
+    { "a /\\ ) b", "error: invalid character: )" },
+    { "()", "error: invalid character: )" },
+  };
+
+  public static void main (String[] args) {
+    int failures = 0;
+
+    for (String[] c: cases) {
+      String result = parse (c[0]);
+      if (!result.equals (c[1])) {
+        System.err.println ("Parsing \"" + c[0] + "\": expected " + c[1] +
+                            ", got " + result);
+        failures++;
+      }
+    }
+    System.out.println (cases.length + " formulae, " + failures +
+                        " mismatches");
+    System.exit (failures);
+  }
+
+  private static String parse (String formula) {
+    try {
+      Formula<String> f =
+        gov.nasa.ltl.trans.Parser.parse (formula, new FormulaFactory ());
+      return f.toString ();
+    } catch (ParseErrorException e) {
+      return "error: " + e.getMessage ();
+    }
+  }
+}
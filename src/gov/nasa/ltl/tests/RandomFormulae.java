@@ -10,8 +10,8 @@ import gov.nasa.ltl.graph.SFSReduction;
 import gov.nasa.ltl.graph.Simplify;
 import gov.nasa.ltl.graph.SuperSetReduction;
 import gov.nasa.ltl.trans.Formula;
-import gov.nasa.ltl.trans.LTL2Buchi;
 import gov.nasa.ltl.trans.Rewriter;
+import gov.nasa.ltl.trans.TranslationOptions;
 import gov.nasa.ltl.trans.Translator;
 
 import java.lang.management.ManagementFactory;
@@ -89,7 +89,6 @@ public class RandomFormulae {
       int name = 0, sublength;
       @SuppressWarnings ("unused")
       Formula<Integer> f = null, s1 = null, s2 = null;
-      LTL2Buchi.debug = false;
       switch (length) {
       case 0:
         assert false : "formulae cannot have zero length";
@@ -173,6 +172,9 @@ public class RandomFormulae {
   // Save given string representation of P, if any, to avoid rounding issues.
   private static String Pstr = null;
   private static boolean haveCpuTime;
+  private static final TranslationOptions
+    AUT = TranslationOptions.DEFAULT.withAlgorithm (Translator.Algorithm.LTL2AUT),
+    BUCHI = TranslationOptions.DEFAULT;
 
   /**
    * @param args
@@ -218,10 +220,9 @@ public class RandomFormulae {
         Graph<Integer> baAut, gbaAut, baBu, gbaBu;
         if (optimise)
           f = new Rewriter<Integer> (f).rewrite ();
-        Translator.setAlgorithm (Translator.Algorithm.LTL2AUT);
         if (haveCpuTime)
           time = tb.getCurrentThreadCpuTime ();
-        gbaAut = Translator.translate (f);
+        gbaAut = Translator.translate (f, AUT);
         if (haveCpuTime)
           autTime[i] = tb.getCurrentThreadCpuTime () - time;
         if (optimise)
@@ -239,10 +240,9 @@ public class RandomFormulae {
         }
         // If baAut is non-empty, gbaAut is non-empty too.
         assert gbaAut.getNodeCount () > 0 && gbaAut.getEdgeCount () > 0;
-        Translator.setAlgorithm (Translator.Algorithm.LTL2BUCHI);
         if (haveCpuTime)
           time = tb.getCurrentThreadCpuTime ();
-        gbaBu = Translator.translate (f);
+        gbaBu = Translator.translate (f, BUCHI);
         if (haveCpuTime)
           buTime[i] = tb.getCurrentThreadCpuTime () - time;
         if (optimise)
@@ -4,6 +4,7 @@ import gov.nasa.ltl.graph.Graph;
 import gov.nasa.ltl.graphio.Writer;
 import gov.nasa.ltl.trans.Formula;
 import gov.nasa.ltl.trans.LTL2Buchi;
+import gov.nasa.ltl.trans.TranslationOptions;
 
 /**
  * This class tests formula instantiation and transformation
@@ -51,7 +52,7 @@ public class TrickyAtomTest {
   }
 
   public static void main (String[] args) {
-    LTL2Buchi.debug = true;
+    TranslationOptions options = TranslationOptions.DEFAULT.withDebug (true);
     System.out.println ("Easy:");
     Formula<Character> easy = Formula.Always (Formula.And (Formula.And (Formula
         .Eventually (Formula.Proposition ('a')), Formula
@@ -60,7 +61,7 @@ public class TrickyAtomTest {
         .Implies (Formula.Proposition ('b'), Formula
             .Eventually (Formula.Proposition ('c')))));
     System.out.println (easy);
-    Graph<Character> gEasy = LTL2Buchi.translate (easy);
+    Graph<Character> gEasy = LTL2Buchi.translate (easy, options);
     Writer<Character> v = Writer.getWriter (Writer.Format.FSP, System.out);
     v.write (gEasy);
     
@@ -74,7 +75,7 @@ public class TrickyAtomTest {
         .Implies (Formula.Proposition (new TrickyAtom ('b')), Formula
             .Eventually (Formula.Proposition (new TrickyAtom ('c'))))));
     System.out.println (tricky);
-    Graph<TrickyAtom> gTricky = LTL2Buchi.translate (tricky);
+    Graph<TrickyAtom> gTricky = LTL2Buchi.translate (tricky, options);
     Writer<TrickyAtom> w = Writer.getWriter (Writer.Format.FSP, System.out);
     w.write (gTricky);
   }
@@ -0,0 +1,139 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.ltl.trans;
+
+import gov.nasa.ltl.graph.Attributes;
+import gov.nasa.ltl.graph.Edge;
+import gov.nasa.ltl.graph.Graph;
+import gov.nasa.ltl.graph.GraphBuilder;
+import gov.nasa.ltl.graph.Guard;
+import gov.nasa.ltl.graph.Literal;
+import gov.nasa.ltl.graph.Node;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Renaming of the atoms of a formula to their positions: the first
+ * atom met in prefix order becomes 0, the next new one 1, and so on.
+ * Formulae which differ only in the names of their atoms have the same
+ * canonical form, so an automaton for that form can be instantiated for
+ * each of them by renaming the literals on its edges back.
+ */
+class AtomRenaming<PropT> {
+  private final ArrayList<PropT> atoms = new ArrayList<PropT> ();
+  private final HashMap<PropT, Integer> positions = new HashMap<PropT, Integer> ();
+  private final Formula<Integer> canonical;
+
+  /**
+   * @param f formula to be renamed; its canonical form is built in a
+   *    factory of its own
+   */
+  AtomRenaming (Formula<PropT> f) {
+    canonical = rename (f, new FormulaFactory ());
+  }
+
+  private Formula<Integer> rename (Formula<PropT> f, FormulaFactory fac) {
+    switch (f.getContent ()) {
+    case PROPOSITION:
+      Integer i = positions.get (f.getName ());
+      if (i == null) {
+        i = atoms.size ();
+        positions.put (f.getName (), i);
+        atoms.add (f.getName ());
+      }
+      return fac.Proposition (i);
+    case TRUE:
+      return fac.True ();
+    case FALSE:
+      return fac.False ();
+    case NOT:
+      return fac.Not (rename (f.getLeft (), fac));
+    case NEXT:
+      return fac.Next (rename (f.getLeft (), fac));
+    default:
+      break;
+    }
+    Formula<Integer> l = rename (f.getLeft (), fac);
+    Formula<Integer> r = rename (f.getRight (), fac);
+    switch (f.getContent ()) {
+    case AND:
+      return fac.And (l, r);
+    case OR:
+      return fac.Or (l, r);
+    case UNTIL:
+      return fac.Until (l, r);
+    case RELEASE:
+      return fac.Release (l, r);
+    case WEAK_UNTIL:
+      return fac.WUntil (l, r);
+    default:
+      assert false : "unknown operator " + f.getContent ();
+      return null;
+    }
+  }
+
+  /**
+   * @return the formula with atoms replaced by their positions
+   */
+  Formula<Integer> getCanonical () {
+    return canonical;
+  }
+
+  /**
+   * @return number of distinct atoms
+   */
+  int getAtomCount () {
+    return atoms.size ();
+  }
+
+  /**
+   * Copies an automaton for the canonical form, putting the original
+   * atoms back into its guards.
+   * @param g automaton for {@link #getCanonical()}; not modified
+   * @return automaton for the original formula
+   */
+  @SuppressWarnings ("unchecked")
+  Graph<PropT> instantiate (Graph<Integer> g) {
+    List<Node<Integer>> nodes = g.getNodes ();
+    GraphBuilder<PropT> result =
+      new GraphBuilder<PropT> (new Attributes (g.getAttributes ()),
+                               nodes.size (), g.getEdgeCount ());
+    int[] copies = new int[nodes.size ()];
+
+    for (Node<Integer> n: nodes) {
+      copies[n.getId ()] = result.addNode (n.getAttributes ());
+    }
+    for (Node<Integer> n: nodes) {
+      for (Edge<Integer> e: n.getOutgoingEdges ()) {
+        Guard<PropT> guard = new Guard<PropT> ();
+        for (Literal<Integer> l: e.getGuard ()) {
+          guard.add (new Literal<PropT> (atoms.get (l.getAtom ()), l.isNegated ()));
+        }
+        result.addEdge (copies[n.getId ()], copies[e.getNext ().getId ()],
+                        guard, e.getAction (), e.getAttributes ());
+      }
+    }
+    if (g.getInit () != null) {
+      result.setInit (copies[g.getInit ().getId ()]);
+    }
+    return result.build ();
+  }
+}
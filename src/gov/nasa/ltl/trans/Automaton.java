@@ -19,7 +19,11 @@
 package gov.nasa.ltl.trans;
 //Written by Dimitra Giannakopoulou, 19 Jan 2001
 
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.Map;
 
 import gov.nasa.ltl.graph.*;
 
@@ -29,14 +33,142 @@ import gov.nasa.ltl.graph.*;
  */
 class Automaton<PropT> {
   private LinkedList<Node<PropT>> nodeList = new LinkedList<Node<PropT>>();
-  private Node<PropT>[]   equivalence_classes; // array of representatives of equivalent states
+  // ids of representatives of equivalent states, by next field
+  private HashMap<StateKey<PropT>, Integer> equivalence_classes;
   private Pool pool;
+  // under LTL2AUT, states also have to agree on their old fields
+  private final boolean compareOld;
+  // tableau nodes waiting for Node.expand, and the largest size it reached
+  private final ArrayDeque<Node<PropT>> pending = new ArrayDeque<Node<PropT>>();
+  private final boolean depthFirst;
+  private int maxPending = 0;
+  // nodes are processed by fork-join tasks
+  private final boolean parallel;
+  /* The initial node is kept out of stateIndex: until it has been
+   * collapsed it matches any node with the same next (and old) fields,
+   * whatever its accepting conditions.
+   */
+  private Node<PropT> initNode = null;
+  private final Map<StateKey<PropT>, Node<PropT>> stateIndex;
+  private final Budget budget;
+
+  /**
+   * Lookup key for {@link Automaton#store(Node)} and
+   * {@link Automaton#index_equivalence(Node)}. The hash of the next
+   * field and, if given, the accepting conditions and old field is
+   * computed once, so only colliding nodes are compared set by set.
+   */
+  private static class StateKey<PropT> {
+    private final FormulaSet<PropT> next;
+    private final FormulaSet<PropT> old;
+    private final BitSet accepting;
+    private final int hash;
 
-  Automaton (Pool pool) {
+    StateKey (FormulaSet<PropT> next, BitSet accepting,
+              FormulaSet<PropT> old) {
+      this.next = next;
+      this.accepting = accepting;
+      this.old = old;
+      int h = next.hashCode();
+      if (accepting != null)
+        h = h * 31 + accepting.hashCode();
+      if (old != null)
+        h = h * 31 + old.hashCode();
+      hash = h;
+    }
+
+    StateKey (Node<PropT> nd, boolean withOld) {
+      this(nd.getField_next(), nd.getField_accepting(),
+           withOld ? nd.getField_old() : null);
+    }
+
+    @Override
+    public int hashCode () {
+      return hash;
+    }
+
+    @Override
+    public boolean equals (Object obj) {
+      if (!(obj instanceof StateKey<?>))
+        return false;
+      StateKey<?> k = (StateKey<?>)obj;
+      return hash == k.hash && next.equals(k.next) &&
+        (accepting == null ? k.accepting == null :
+          accepting.equals(k.accepting)) &&
+        (old == null ? k.old == null : old.equals(k.old));
+    }
+  }
+
+  Automaton (Pool pool, TranslationOptions options, Budget budget) {
     equivalence_classes = null;
     this.pool = pool;
+    this.budget = budget;
+    compareOld = options.getAlgorithm() != Translator.Algorithm.LTL2BUCHI;
+    depthFirst = options.getExpansionOrder() ==
+      TranslationOptions.ExpansionOrder.DEPTH_FIRST;
+    parallel = options.getExpansionOrder() ==
+      TranslationOptions.ExpansionOrder.PARALLEL;
+    stateIndex = new HashMap<StateKey<PropT>, Node<PropT>>();
+  }
+
+  /**
+   * Checks the budget against the number of tableau nodes created so
+   * far. Called before each node is expanded.
+   * @throws BudgetExceededException
+   */
+  void checkBudget () {
+    budget.checkNodes (pool.lastId () + 1);
+  }
+
+  /**
+   * @return whether nodes are to be expanded by {@link ParallelExpansion}
+   *    rather than from the worklist
+   */
+  boolean isParallel () {
+    return parallel;
+  }
+
+  /**
+   * Adds a node to the worklist of {@link Node#expand(Automaton)}.
+   * Depth-first, it is expanded next, which visits nodes in the same
+   * order as a recursive expansion; breadth-first, it is expanded
+   * after all nodes already waiting.
+   * @param nd
+   */
+  void schedule (Node<PropT> nd) {
+    if (depthFirst) {
+      pending.addFirst (nd);
+    } else {
+      pending.addLast (nd);
+    }
+    if (pending.size () > maxPending) {
+      maxPending = pending.size ();
+    }
+  }
+
+  /**
+   * @return next node to be expanded, or null if there is none
+   */
+  Node<PropT> nextPending () {
+    return pending.pollFirst ();
   }
 
+  /**
+   * @return the largest number of nodes that were waiting for
+   *    expansion at the same time
+   */
+  int getMaxPending () {
+    return maxPending;
+  }
+
+  /**
+   * Builds the generalised Büchi automaton of the given states. The
+   * budget's edge limit is checked as the edges of each state are
+   * added.
+   * @param automaton states by ID, as from {@link #structForRuntAnalysis()}
+   * @return automaton
+   * @throws BudgetExceededException
+   */
   @SuppressWarnings ("unchecked")
   public Graph<PropT> SMoutput (State<PropT>[] automaton) {
     int accepting_conds;
@@ -60,10 +192,13 @@ class Automaton<PropT> {
       }
     }
 
+    int edges = 0;
     for (int i = 0; i < size; i++) {
       if ((automaton[i] != null) && 
               (i == automaton[i].getRepresentativeId())) {
         automaton[i].SMoutput(nodes, nodes[i]);
+        edges += nodes[i].getOutgoingEdgeCount();
+        budget.checkEdges(edges);
       }
     }
     
@@ -78,26 +213,46 @@ class Automaton<PropT> {
     return g;
   }
 
-  public void add (Node<PropT> nd) {
-    nodeList.add (nd);
-  }
+  /**
+   * Records a node all of whose formulae have been processed. If there
+   * is an equivalent state already, the node is merged into it,
+   * otherwise it becomes a new state. Nodes are stored by one thread
+   * only, even if they are processed in parallel.
+   * @param nd
+   * @return true if nd is a new state, whose successor has to be expanded
+   */
+  boolean store (Node<PropT> nd) {
+    if (nd.isInitial ()) {
+      initNode = nd;
+      addToList (nd);
+      return true;
+    }
 
-  public Node<PropT> alreadyThere (Node<PropT> nd) {
     /* when running LTL2Buchi is already there if next fields and 
        accepting conditions are the same. For LTL2AUT, old fields
        also have to be the same
      */
-    for (Node<PropT> currState: nodeList) {
-      if (currState.getField_next().equals(nd.getField_next()) && 
-              currState.compare_accepting(nd) && 
-              (Translator.getAlgorithm() == Translator.Algorithm.LTL2BUCHI || 
-                (currState.getField_old().equals(nd.getField_old())))) {
-        //System.out.println("Match found");
-        return currState;
+    if (initNode != null &&
+        initNode.getField_next().equals(nd.getField_next()) && 
+        (!compareOld || initNode.getField_old().equals(nd.getField_old()))) {
+      if (initNode.compare_accepting(nd)) {
+        initNode.modify(nd);
+        return false;
       }
     }
-    //System.out.println("No match found for node " + nd.getNodeId());
-    return null;
+
+    Node<PropT> existing =
+      stateIndex.putIfAbsent (new StateKey<PropT> (nd, compareOld), nd);
+    if (existing != null) {
+      existing.modify(nd);
+      return false;
+    }
+    addToList (nd);
+    return true;
+  }
+
+  private void addToList (Node<PropT> nd) {
+    nodeList.add (nd);
   }
 
   /*  public int get_representative_id(int automaton_index, State[] automaton)
@@ -107,25 +262,21 @@ class Automaton<PropT> {
    */
   public int index_equivalence (Node<PropT> nd) {
     // check if next field of node is already represented
-    int index;
-
-    for (index = 0; index <= pool.lastId (); index++) {
-      if (equivalence_classes[index] == null) {
-        //	System.out.println("Null object");
-        break;
-      } else if ((Translator.getAlgorithm() == Translator.Algorithm.LTL2BUCHI) && 
-                     (equivalence_classes[index].getField_next().equals(nd.getField_next()))) {
-        //	System.out.println("Successful merge");
-        return (equivalence_classes[index].getNodeId());
-      }
+    if (compareOld) {
+      // LTL2AUT never merges, every node represents itself
+      return nd.getNodeId();
     }
 
-    assert index <= pool.lastId () :
-      "ERROR - size of equivalence classes array was incorrect";
+    StateKey<PropT> key = new StateKey<PropT> (nd.getField_next(), null, null);
+    Integer representative = equivalence_classes.get (key);
 
-    equivalence_classes[index] = nd;
+    if (representative != null) {
+      //	System.out.println("Successful merge");
+      return representative;
+    }
+    equivalence_classes.put (key, nd.getNodeId());
 
-    return (equivalence_classes[index].getNodeId());
+    return nd.getNodeId();
   }
 
   @SuppressWarnings ("unchecked")
@@ -135,7 +286,7 @@ class Automaton<PropT> {
 
     int automatonSize = pool.getIdCount ();
     State<PropT>[] RTstruct = new State[automatonSize];
-    equivalence_classes = new Node[automatonSize];
+    equivalence_classes = new HashMap<StateKey<PropT>, Integer>(2 * nodeList.size ());
 
     for (Node<PropT> current: nodeList) {
       current.set_equivalenceId(index_equivalence(current));
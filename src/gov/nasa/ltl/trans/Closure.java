@@ -0,0 +1,81 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.ltl.trans;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+
+/**
+ * Dense numbering of the subformulae of a formula being translated.
+ * Only subformulae of the input ever end up in the toBeDone, old and
+ * next fields of a tableau {@link Node}, so these can be stored as
+ * {@link FormulaSet} bit vectors over this numbering.
+ *
+ * Indices follow the order of formula IDs, which is the order
+ * {@link Formula#compareTo(Formula)} defines.
+ */
+class Closure<PropT> {
+  private final ArrayList<Formula<PropT>> formulae;
+  private final IdentityHashMap<Formula<PropT>, Integer> index;
+  private final ImplicationMemo<PropT> implications =
+    new ImplicationMemo<PropT> ();
+
+  Closure (Formula<PropT> root) {
+    index = new IdentityHashMap<Formula<PropT>, Integer>();
+    formulae = new ArrayList<Formula<PropT>>();
+    collect(root);
+    Collections.sort(formulae);
+    for (int i = 0; i < formulae.size(); i++)
+      index.put(formulae.get(i), i);
+  }
+
+  private void collect (Formula<PropT> f) {
+    if (f == null || index.containsKey(f))
+      return;
+    index.put(f, -1);
+    formulae.add(f);
+    collect(f.getLeft());
+    collect(f.getRight());
+  }
+
+  /**
+   * @param f
+   * @return index of f, or -1 if it is not a subformula
+   */
+  int indexOf (Formula<PropT> f) {
+    Integer i = index.get(f);
+    return i == null ? -1 : i;
+  }
+
+  Formula<PropT> get (int i) {
+    return formulae.get(i);
+  }
+
+  int size () {
+    return formulae.size();
+  }
+
+  /**
+   * @return memo of implication checks against sets over this closure
+   */
+  ImplicationMemo<PropT> getImplicationMemo () {
+    return implications;
+  }
+}
@@ -0,0 +1,235 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.ltl.trans;
+
+import gov.nasa.ltl.graph.Graph;
+import gov.nasa.ltl.graphio.BinaryGraph;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+
+/**
+ * Cache of Büchi automata in a local directory, so that they survive
+ * the JVM. Each automaton is stored in {@link BinaryGraph} form, in a
+ * file named after a SHA-256 hash of the parsed formula, in the
+ * unambiguous form of {@link Formula#toKey()}, and of the options
+ * which affect the result.
+ *
+ * Files are written to a temporary name and then renamed, so readers
+ * never see half-written automata, and several processes can share a
+ * directory. Once the files take more than a given number of bytes,
+ * the least recently used ones are deleted. Files which cannot be read
+ * are deleted and treated as missing; failure to write a file only
+ * means the automaton is not cached.
+ *
+ * Translations with {@link TranslationOptions#isPartialResults()} set
+ * are not cached, since their result depends on timing.
+ */
+public class DiskTranslationCache {
+  /** Default limit on the size of the directory: 64 MiB. */
+  public static final long DEFAULT_MAX_BYTES = 64L << 20;
+
+  private static final String SUFFIX = ".ba";
+  private static final Charset UTF8 = Charset.forName ("UTF-8");
+
+  private final File dir;
+  private final long maxBytes;
+  private long hits = 0;
+  private long misses = 0;
+
+  /**
+   * @param dir directory to keep the automata in; created if missing
+   * @param maxBytes size the files may take in total
+   */
+  public DiskTranslationCache (File dir, long maxBytes) {
+    this.dir = dir;
+    this.maxBytes = maxBytes;
+    dir.mkdirs ();
+  }
+
+  /**
+   * Looks up the automaton for a formula, translating the formula with
+   * {@link LTL2Buchi#translate(Formula, TranslationOptions)} and storing
+   * the result if it is not in the cache.
+   * @param formula
+   * @param options
+   * @return automaton
+   * @throws ParseErrorException
+   */
+  public Graph<String> translate (String formula, TranslationOptions options)
+      throws ParseErrorException {
+    Formula<String> f = Parser.parse (formula, new FormulaFactory ());
+
+    if (options.isPartialResults ()) {
+      return LTL2Buchi.translate (f, options);
+    }
+
+    File file = new File (dir, key (f, options) + SUFFIX);
+    Graph<String> g = load (file);
+    synchronized (this) {
+      if (g != null) {
+        hits++;
+      } else {
+        misses++;
+      }
+    }
+    if (g != null) {
+      return g;
+    }
+
+    g = LTL2Buchi.translate (f, options);
+    store (file, g);
+    return g;
+  }
+
+  /**
+   * @param f
+   * @param options
+   * @return hexadecimal hash of the key form of f and the options
+   *    which change the automaton
+   */
+  static String key (Formula<String> f, TranslationOptions options) {
+    String s = f.toKey () + "\n" + options.getAlgorithm () + " " +
+      options.getExpansionOrder () + " " + options.isRewrite () + " " +
+      options.isBisim () + " " + options.isFairSim ();
+    try {
+      byte[] hash = MessageDigest.getInstance ("SHA-256").digest (s.getBytes (UTF8));
+      StringBuilder sb = new StringBuilder ();
+      for (byte b: hash)
+        sb.append (String.format ("%02x", b & 0xFF));
+      return sb.toString ();
+    } catch (NoSuchAlgorithmException e) {
+      throw new LTLErrorException ("SHA-256 not available");
+    }
+  }
+
+  private Graph<String> load (File file) {
+    if (!file.isFile ()) {
+      return null;
+    }
+    try {
+      InputStream in = new BufferedInputStream (new FileInputStream (file));
+      try {
+        Graph<String> g = BinaryGraph.read (in);
+        file.setLastModified (System.currentTimeMillis ());
+        return g;
+      } finally {
+        in.close ();
+      }
+    } catch (IOException e) {
+      file.delete ();
+      return null;
+    } catch (RuntimeException e) { // garbled contents
+      file.delete ();
+      return null;
+    }
+  }
+
+  private void store (File file, Graph<String> g) {
+    File tmp = null;
+    try {
+      tmp = File.createTempFile ("ltl", ".tmp", dir);
+      OutputStream out = new BufferedOutputStream (new FileOutputStream (tmp));
+      try {
+        BinaryGraph.write (g, out);
+      } finally {
+        out.close ();
+      }
+      try {
+        Files.move (tmp.toPath (), file.toPath (),
+                    StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move (tmp.toPath (), file.toPath (),
+                    StandardCopyOption.REPLACE_EXISTING);
+      }
+      tmp = null;
+      evict ();
+    } catch (IOException e) {
+      // not cached then
+    } finally {
+      if (tmp != null) {
+        tmp.delete ();
+      }
+    }
+  }
+
+  /**
+   * Deletes the least recently used automata until the rest fit.
+   */
+  private synchronized void evict () {
+    File[] files = dir.listFiles ();
+    if (files == null) {
+      return;
+    }
+    long total = 0;
+    for (File f: files) {
+      if (f.getName ().endsWith (SUFFIX)) {
+        total += f.length ();
+      }
+    }
+    if (total <= maxBytes) {
+      return;
+    }
+    // times may change while sorting, so take them first
+    final HashMap<File, Long> used = new HashMap<File, Long> ();
+    for (File f: files) {
+      used.put (f, f.lastModified ());
+    }
+    Arrays.sort (files, new Comparator<File> () {
+      public int compare (File a, File b) {
+        return used.get (a).compareTo (used.get (b));
+      }
+    });
+    for (File f: files) {
+      if (total <= maxBytes) {
+        break;
+      }
+      if (f.getName ().endsWith (SUFFIX)) {
+        long len = f.length ();
+        if (f.delete ()) {
+          total -= len;
+        }
+      }
+    }
+  }
+
+  public synchronized long getHits () {
+    return hits;
+  }
+
+  public synchronized long getMisses () {
+    return misses;
+  }
+}
@@ -19,8 +19,6 @@
 package gov.nasa.ltl.trans;
 
 import java.util.BitSet;
-import java.util.HashMap;
-import java.util.TreeSet;
 
 //Written by Dimitra Giannakopoulou, 19 Jan 2001
 //Parser by Flavio Lerda, 8 Feb 2001
@@ -32,7 +30,8 @@ import java.util.TreeSet;
  * Representation of an LTL formula parametrised over an atom type.
  * Instances of this class are created by forming terms over
  * {@link #Always(Formula)}, {@link #And(Formula, Formula)} etc.
- * and {@link #Proposition(Object)} applied to atoms.
+ * and {@link #Proposition(Object)} applied to atoms, or by the
+ * methods of the same name of a {@link FormulaFactory}.
  * 
  * This class implements an ordering which is incompatible with its
  * {@link #equals(Object)} method.
@@ -67,15 +66,8 @@ public class Formula<PropT> implements Comparable<Formula<PropT>> {
     }
   }
 
-  /** Source of id values. */
-  private static int       nId = 0;
-  /**
-   * Storage for (sub)formulae we’ve already seen. We set both the
-   * key and the entry to the formula being stored, so it can be
-   * looked up by hash and retrieved to replace an equivalent formula.
-   */
-  private static HashMap<Formula<?>, Formula<?>> cache =
-    new HashMap<Formula<?>, Formula<?>>();
+  /** Factory which created this formula and owns its ID. */
+  private final FormulaFactory factory;
   /** Outermost operator of this formula. */
   private Content          content;
   /**
@@ -84,7 +76,7 @@ public class Formula<PropT> implements Comparable<Formula<PropT>> {
    */
   private Formula<PropT>   left;
   private Formula<PropT>   right;
-  /** This formula’s unique ID, computed from nId. */
+  /** This formula’s unique ID, obtained from its factory. */
   private int              id;
   /** index to the untils vector */
   private int              untils_index;
@@ -95,17 +87,26 @@ public class Formula<PropT> implements Comparable<Formula<PropT>> {
   private boolean          has_been_visited;
   /** Computed hash value, or 0 if it has to be recomputed. */
   private int              hash = 0;
+  /**
+   * Interned {@link #negate()} and false V this, computed on first use
+   * and forgotten when an operand is replaced.
+   */
+  private volatile Formula<PropT> negation;
+  private volatile Formula<PropT> always;
 
   /**
    * Creates a new formula with a fresh ID. Calls to this constructor
-   * should be wrapped in {@link #unique(Formula)}.
+   * should be wrapped in {@link FormulaFactory#unique(Formula)}.
+   * @param fac factory the formula belongs to
    * @param c operator
    * @param sx left operand
    * @param dx right operand
    * @param n atom, if c == Content.PROPOSITION
    */
-  private Formula (Content c, Formula<PropT> sx, Formula<PropT> dx, PropT n) {
-    id = nId++;
+  Formula (FormulaFactory fac, Content c, Formula<PropT> sx,
+           Formula<PropT> dx, PropT n) {
+    factory = fac;
+    id = fac.nextId ();
     content = c;
     left = sx;
     right = dx;
@@ -117,10 +118,19 @@ public class Formula<PropT> implements Comparable<Formula<PropT>> {
 
   /**
    * Resets the static state of the Formula class. Currently this
-   * affects the cache of known (sub)formulae.
+   * replaces the default {@link FormulaFactory} and thus its cache of
+   * known (sub)formulae.
    */
   public static void resetStatic () {
-    cache = new HashMap<Formula<?>, Formula<?>>();
+    FormulaFactory.resetDefault ();
+  }
+
+  /**
+   * Gets the factory this formula was created by.
+   * @return factory
+   */
+  public FormulaFactory getFactory () {
+    return factory;
   }
 
   /**
@@ -182,6 +192,22 @@ public class Formula<PropT> implements Comparable<Formula<PropT>> {
     }
   }
 
+  /**
+   * Left-hand operand in syntax order, unlike {@link #getSub1()}.
+   * @return left operand, or the only one if operator is unary
+   */
+  Formula<PropT> getLeft () {
+    return left;
+  }
+
+  /**
+   * Right-hand operand in syntax order, unlike {@link #getSub2()}.
+   * @return right operand, or null if operator is not binary
+   */
+  Formula<PropT> getRight () {
+    return right;
+  }
+
   /**
    * Set the left-hand operand of this formula; or the only one if operator is unary
    * @param l
@@ -190,6 +216,8 @@ public class Formula<PropT> implements Comparable<Formula<PropT>> {
     assert content != Content.PROPOSITION : "formula is an atom";
     left = l;
     hash = 0;
+    negation = null;
+    always = null;
   }
 
   /**
@@ -209,6 +237,8 @@ public class Formula<PropT> implements Comparable<Formula<PropT>> {
     }
     right = r;
     hash = 0;
+    negation = null;
+    always = null;
   }
 
   @Override
@@ -252,6 +282,8 @@ public class Formula<PropT> implements Comparable<Formula<PropT>> {
    * @return
    */
   int init_acc_sets() { 
+    // formulae may be shared with earlier translations from the same factory
+    reset_untils();
     int acc_sets = countUntils(0);
     reset_visited();
 
@@ -296,10 +328,12 @@ public class Formula<PropT> implements Comparable<Formula<PropT>> {
    * @param check_against
    * @return
    */
-  boolean is_special_case_of_V (TreeSet<Formula<PropT>> check_against) {
-    // necessary for Java’s type inference to do its work 
-    Formula<PropT> tmp = False();
-    Formula<PropT> form = Release(tmp, this);
+  boolean is_special_case_of_V (FormulaSet<PropT> check_against) {
+    Formula<PropT> form = always;
+
+    if (form == null) {
+      always = form = factory.Always(this);
+    }
 
     if (check_against.contains(form)) {
       return true;
@@ -310,11 +344,13 @@ public class Formula<PropT> implements Comparable<Formula<PropT>> {
 
   /**
    * TODO: What does this do?
+   * Results for compound formulae are remembered in the
+   * {@link ImplicationMemo} of the closure old is taken over.
    * @param old
    * @param next
    * @return
    */
-  boolean is_synt_implied (TreeSet<Formula<PropT>> old, TreeSet<Formula<PropT>> next) {
+  boolean is_synt_implied (FormulaSet<PropT> old, FormulaSet<PropT> next) {
     if (this.getContent() == Content.TRUE) {
       return true;
     }
@@ -325,7 +361,18 @@ public class Formula<PropT> implements Comparable<Formula<PropT>> {
 
     if (isLiteral ())
       return false;
-    
+
+    return old.getClosure().getImplicationMemo().is_synt_implied(this, old, next);
+  }
+
+  /**
+   * Does the work of {@link #is_synt_implied(FormulaSet, FormulaSet)}
+   * for a compound formula not in old, without consulting the memo.
+   * @param old
+   * @param next
+   * @return
+   */
+  boolean compute_synt_implied (FormulaSet<PropT> old, FormulaSet<PropT> next) {
     Formula<PropT> form1 = this.getSub1();
     Formula<PropT> form2 = this.getSub2();
     Formula<PropT> form3 = this.getNext();
@@ -372,11 +419,17 @@ public class Formula<PropT> implements Comparable<Formula<PropT>> {
   }
 
   /**
-   * Obtains a new formula which is the negation of this one.
+   * Obtains a new formula which is the negation of this one. It is
+   * built once and then remembered.
    * @return
    */
   public Formula<PropT> negate () {
-    return Not(this);
+    Formula<PropT> n = negation;
+
+    if (n == null) {
+      negation = n = factory.Not(this);
+    }
+    return n;
   }
 
   /**
@@ -410,6 +463,23 @@ public class Formula<PropT> implements Comparable<Formula<PropT>> {
     return current_index;
   }
 
+  /**
+   * Clears the until indices and right-of-until marks left by a
+   * previous {@link #init_acc_sets()} on this formula or a subformula.
+   */
+  private void reset_untils () {
+    untils_index = -1;
+    rightOfWhichUntils = null;
+
+    if (left != null) {
+      left.reset_untils();
+    }
+
+    if (right != null) {
+      right.reset_untils();
+    }
+  }
+
   /**
    * TODO: What does this do?
    */
@@ -498,124 +568,88 @@ public class Formula<PropT> implements Comparable<Formula<PropT>> {
     return toString (false);
   }
 
+  /**
+   * Text form of this formula for use as a key: operators in prefix
+   * order, and each atom as the length of its name followed by ':'
+   * and the name. Unlike {@link #toString()}, this tells apart
+   * formulae whose atoms print like subformulae, e. g. a /\ b and
+   * the atom "( a ) /\ ( b )".
+   * @return key
+   */
+  String toKey () {
+    StringBuilder sb = new StringBuilder ();
+    appendKey (sb);
+    return sb.toString ();
+  }
+
+  private void appendKey (StringBuilder sb) {
+    sb.append (content.toString ());
+    if (content == Content.PROPOSITION) {
+      String n = name.toString ();
+      sb.append (n.length ()).append (':').append (n);
+    }
+    if (left != null)
+      left.appendKey (sb);
+    if (right != null)
+      right.appendKey (sb);
+  }
+
   public static <PropT> Formula<PropT> Always (Formula<PropT> f) {
-    // necessary for Java’s type inference to do its work 
-    Formula<PropT> tmp = False();
-    return unique(new Formula<PropT>(Content.RELEASE, tmp, f, null));
+    return f.factory.Always(f);
   }
 
   public static <PropT> Formula<PropT> And (Formula<PropT> sx, Formula<PropT> dx) {
-    if (sx.id < dx.id) {
-      return unique(new Formula<PropT>(Content.AND, sx, dx, null));
-    } else {
-      return unique(new Formula<PropT>(Content.AND, dx, sx, null));
-    }
+    return sx.factory.And(sx, dx);
   }
 
   public static <PropT> Formula<PropT> Eventually (Formula<PropT> f) {
-    // necessary for Java’s type inference to do its work 
-    Formula<PropT> tmp = True();
-    return unique(new Formula<PropT>(Content.UNTIL, tmp, f, null));
+    return f.factory.Eventually(f);
   }
 
   public static <PropT> Formula<PropT> False () {
-    return unique(new Formula<PropT>(Content.FALSE, null, null, null));
+    return FormulaFactory.getDefault().False();
   }
 
   public static <PropT> Formula<PropT> Implies (Formula<PropT> sx, Formula<PropT> dx) {
-    return Or(Not(sx), dx);
+    return sx.factory.Implies(sx, dx);
   }
 
   public static <PropT> Formula<PropT> Next (Formula<PropT> f) {
-    return unique(new Formula<PropT>(Content.NEXT, f, null, null));
+    return f.factory.Next(f);
   }
 
   public static <PropT> Formula<PropT> Not (Formula<PropT> f) {
-    if (f.isLiteral ()) {
-      switch (f.content) {
-      case TRUE:
-        return False();
-      case FALSE:
-        return True();
-      case NOT:
-        return f.left;
-      default:
-        return unique(new Formula<PropT>(Content.NOT, f, null, null));
-      }
-    }
-
-    // f is not a literal, so go on...
-    // The methods used here call unique() themselves.
-    switch (f.content) {
-    case AND:
-      return Or(Not(f.left), Not(f.right));
-    case OR:
-      return And(Not(f.left), Not(f.right));
-    case UNTIL:
-      return Release(Not(f.left), Not(f.right));
-    case RELEASE:
-      return Until(Not(f.left), Not(f.right));
-    case WEAK_UNTIL:
-      return WRelease(Not(f.left), Not(f.right));
-    //case 'M': return WUntil(Not(f.left), Not(f.right));
-    case NOT:
-      return f.left;
-    case NEXT:
-      return Next(Not(f.left));
-    default:
-      assert false : "found literal with is_literal() false";
-      return null;
-    }
+    return f.factory.Not(f);
   }
 
   public static <PropT> Formula<PropT> Or (Formula<PropT> sx, Formula<PropT> dx) {
-    if (sx.id < dx.id) {
-      return unique(new Formula<PropT>(Content.OR, sx, dx, null));
-    } else {
-      return unique(new Formula<PropT>(Content.OR, dx, sx, null));
-    }
+    return sx.factory.Or(sx, dx);
   }
 
   public static <PropT> Formula<PropT> Proposition (PropT name) {
-    return unique(new Formula<PropT>(Content.PROPOSITION, null, null, name));
+    return FormulaFactory.getDefault().Proposition(name);
   }
 
   public static <PropT> Formula<PropT> Release (Formula<PropT> sx, Formula<PropT> dx) {
-    return unique(new Formula<PropT>(Content.RELEASE, sx, dx, null));
+    return sx.factory.Release(sx, dx);
   }
 
   public static <PropT> Formula<PropT> True () {
-    return unique(new Formula<PropT>(Content.TRUE, null, null, null));
+    return FormulaFactory.getDefault().True();
   }
 
   public static <PropT> Formula<PropT> Until (Formula<PropT> sx, Formula<PropT> dx) {
-    return unique(new Formula<PropT>(Content.UNTIL, sx, dx, null));
+    return sx.factory.Until(sx, dx);
   }
 
   public static <PropT> Formula<PropT> WRelease (Formula<PropT> sx, Formula<PropT> dx) {
-    return unique(new Formula<PropT>(Content.UNTIL, dx, And(sx, dx), null));
+    return sx.factory.WRelease(sx, dx);
   }
 
   public static <PropT> Formula<PropT> WUntil (Formula<PropT> sx, Formula<PropT> dx) {
-    return unique(new Formula<PropT>(Content.WEAK_UNTIL, sx, dx, null));
+    return sx.factory.WUntil(sx, dx);
   }
 
-  /**
-   * Checks for a formula syntactically equivalent to this one, and
-   * adds this formula to the cache if it is new.
-   * @param <PropT>
-   * @param f formula to be checked
-   * @return syntactically equal cached formula, or if not found, f
-   * @see Formula#cache
-   */
-  @SuppressWarnings ("unchecked")
-  private static <PropT> Formula<PropT> unique (Formula<PropT> f) {
-    if (cache.containsKey (f))
-      return (Formula<PropT>)cache.get (f);
-    cache.put (f, f);
-    return f;
-  }
-  
   /**
    * Checks if this formula is syntactically equivalent to another one.
    */
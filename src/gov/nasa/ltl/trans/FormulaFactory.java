@@ -0,0 +1,257 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.ltl.trans;
+
+import gov.nasa.ltl.trans.Formula.Content;
+
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Source of {@link Formula} instances. A factory owns the table of
+ * (sub)formulae created through it, so that syntactically equal
+ * formulae are represented by the same instance, and the counter
+ * their IDs are taken from.
+ *
+ * Formulae from different factories must not be combined. Creating
+ * formulae is thread-safe, so the branches of a parallel tableau
+ * expansion can negate formulae concurrently. Formulae do carry
+ * annotations of the translation they are part of, though, so
+ * concurrent translations should each use their own instance, which
+ * also means none of them has to be reset while another translation
+ * is using it.
+ *
+ * The static methods of {@link Formula} use the factory of their
+ * operands, and {@link #getDefault()} for atoms and constants.
+ */
+public class FormulaFactory {
+  private static FormulaFactory defaultFactory = new FormulaFactory ();
+
+  /** Source of id values. */
+  private final AtomicInteger nId = new AtomicInteger ();
+  /**
+   * Storage for (sub)formulae we’ve already seen. We set both the
+   * key and the entry to the formula being stored, so it can be
+   * looked up by hash and retrieved to replace an equivalent formula.
+   */
+  private HashMap<Formula<?>, Formula<?>> cache =
+    new HashMap<Formula<?>, Formula<?>>();
+  /** Rewritten forms of formulae of this factory. */
+  private final RewriteMemo rewrites = new RewriteMemo ();
+
+  /**
+   * Gets the factory used by the static methods of {@link Formula}
+   * when they are not given any operands to take a factory from.
+   * @return shared factory
+   */
+  public static FormulaFactory getDefault () {
+    return defaultFactory;
+  }
+
+  /**
+   * Replaces the shared factory by a fresh one. Formulae obtained from
+   * the old one stay valid but are no longer shared with new ones.
+   */
+  static void resetDefault () {
+    defaultFactory = new FormulaFactory ();
+  }
+
+  /**
+   * Gets a fresh ID for a formula created by this factory.
+   * @return id
+   */
+  int nextId () {
+    return nId.getAndIncrement ();
+  }
+
+  /**
+   * Gets the results of {@link Rewriter} for formulae of this factory.
+   * @return memo
+   */
+  RewriteMemo getRewriteMemo () {
+    return rewrites;
+  }
+
+  /**
+   * Gets the number of distinct (sub)formulae known to this factory.
+   * @return size of the table
+   */
+  public synchronized int size () {
+    return cache.size ();
+  }
+
+  /**
+   * Rebuilds a formula, which may come from another factory, in this
+   * one. Annotations of the original are not copied.
+   * @param f
+   * @return formula of this factory equal to f
+   */
+  public <PropT> Formula<PropT> copy (Formula<PropT> f) {
+    switch (f.getContent ()) {
+    case PROPOSITION:
+      return Proposition (f.getName ());
+    case TRUE:
+      return True ();
+    case FALSE:
+      return False ();
+    case NOT:
+      return Not (copy (f.getLeft ()));
+    case NEXT:
+      return Next (copy (f.getLeft ()));
+    case AND:
+      return And (copy (f.getLeft ()), copy (f.getRight ()));
+    case OR:
+      return Or (copy (f.getLeft ()), copy (f.getRight ()));
+    case UNTIL:
+      return Until (copy (f.getLeft ()), copy (f.getRight ()));
+    case RELEASE:
+      return Release (copy (f.getLeft ()), copy (f.getRight ()));
+    case WEAK_UNTIL:
+      return WUntil (copy (f.getLeft ()), copy (f.getRight ()));
+    default:
+      assert false : "unknown operator " + f.getContent ();
+      return null;
+    }
+  }
+
+  public <PropT> Formula<PropT> Always (Formula<PropT> f) {
+    // necessary for Java’s type inference to do its work
+    Formula<PropT> tmp = False();
+    return unique(new Formula<PropT>(this, Content.RELEASE, tmp, f, null));
+  }
+
+  public <PropT> Formula<PropT> And (Formula<PropT> sx, Formula<PropT> dx) {
+    if (sx.getId () < dx.getId ()) {
+      return unique(new Formula<PropT>(this, Content.AND, sx, dx, null));
+    } else {
+      return unique(new Formula<PropT>(this, Content.AND, dx, sx, null));
+    }
+  }
+
+  public <PropT> Formula<PropT> Eventually (Formula<PropT> f) {
+    // necessary for Java’s type inference to do its work
+    Formula<PropT> tmp = True();
+    return unique(new Formula<PropT>(this, Content.UNTIL, tmp, f, null));
+  }
+
+  public <PropT> Formula<PropT> False () {
+    return unique(new Formula<PropT>(this, Content.FALSE, null, null, null));
+  }
+
+  public <PropT> Formula<PropT> Implies (Formula<PropT> sx, Formula<PropT> dx) {
+    return Or(Not(sx), dx);
+  }
+
+  public <PropT> Formula<PropT> Next (Formula<PropT> f) {
+    return unique(new Formula<PropT>(this, Content.NEXT, f, null, null));
+  }
+
+  public <PropT> Formula<PropT> Not (Formula<PropT> f) {
+    Formula<PropT> left = f.getLeft (), right = f.getRight ();
+
+    if (f.isLiteral ()) {
+      switch (f.getContent ()) {
+      case TRUE:
+        return False();
+      case FALSE:
+        return True();
+      case NOT:
+        return left;
+      default:
+        return unique(new Formula<PropT>(this, Content.NOT, f, null, null));
+      }
+    }
+
+    // f is not a literal, so go on...
+    // The methods used here call unique() themselves.
+    switch (f.getContent ()) {
+    case AND:
+      return Or(Not(left), Not(right));
+    case OR:
+      return And(Not(left), Not(right));
+    case UNTIL:
+      return Release(Not(left), Not(right));
+    case RELEASE:
+      return Until(Not(left), Not(right));
+    case WEAK_UNTIL:
+      return WRelease(Not(left), Not(right));
+    //case 'M': return WUntil(Not(left), Not(right));
+    case NOT:
+      return left;
+    case NEXT:
+      return Next(Not(left));
+    default:
+      assert false : "found literal with is_literal() false";
+      return null;
+    }
+  }
+
+  public <PropT> Formula<PropT> Or (Formula<PropT> sx, Formula<PropT> dx) {
+    if (sx.getId () < dx.getId ()) {
+      return unique(new Formula<PropT>(this, Content.OR, sx, dx, null));
+    } else {
+      return unique(new Formula<PropT>(this, Content.OR, dx, sx, null));
+    }
+  }
+
+  public <PropT> Formula<PropT> Proposition (PropT name) {
+    return unique(new Formula<PropT>(this, Content.PROPOSITION, null, null, name));
+  }
+
+  public <PropT> Formula<PropT> Release (Formula<PropT> sx, Formula<PropT> dx) {
+    return unique(new Formula<PropT>(this, Content.RELEASE, sx, dx, null));
+  }
+
+  public <PropT> Formula<PropT> True () {
+    return unique(new Formula<PropT>(this, Content.TRUE, null, null, null));
+  }
+
+  public <PropT> Formula<PropT> Until (Formula<PropT> sx, Formula<PropT> dx) {
+    return unique(new Formula<PropT>(this, Content.UNTIL, sx, dx, null));
+  }
+
+  public <PropT> Formula<PropT> WRelease (Formula<PropT> sx, Formula<PropT> dx) {
+    return unique(new Formula<PropT>(this, Content.UNTIL, dx, And(sx, dx), null));
+  }
+
+  public <PropT> Formula<PropT> WUntil (Formula<PropT> sx, Formula<PropT> dx) {
+    return unique(new Formula<PropT>(this, Content.WEAK_UNTIL, sx, dx, null));
+  }
+
+  /**
+   * Checks for a formula syntactically equivalent to this one, and
+   * adds this formula to the cache if it is new.
+   * @param <PropT>
+   * @param f formula to be checked
+   * @return syntactically equal cached formula, or if not found, f
+   * @see FormulaFactory#cache
+   */
+  @SuppressWarnings ("unchecked")
+  private synchronized <PropT> Formula<PropT> unique (Formula<PropT> f) {
+    assert f.getLeft () == null || f.getLeft ().getFactory () == this :
+      "operand from another factory";
+    assert f.getRight () == null || f.getRight ().getFactory () == this :
+      "operand from another factory";
+    Formula<PropT> g = (Formula<PropT>)cache.get (f);
+    if (g != null)
+      return g;
+    cache.put (f, f);
+    return f;
+  }
+}
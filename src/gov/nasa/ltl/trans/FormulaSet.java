@@ -0,0 +1,169 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.ltl.trans;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Set of subformulae of the formula being translated, stored as a bit
+ * vector over a {@link Closure}. Copying, comparing and merging sets
+ * are word operations. Iteration is in the order of formula IDs, as for
+ * a TreeSet of formulae.
+ *
+ * Sets are only comparable with sets over the same closure. Formulae
+ * outside the closure are never contained and cannot be added.
+ */
+class FormulaSet<PropT> implements Iterable<Formula<PropT>> {
+  private final Closure<PropT> closure;
+  private final long[] words;
+
+  FormulaSet (Closure<PropT> closure) {
+    this.closure = closure;
+    words = new long[(closure.size() + 63) >>> 6];
+  }
+
+  FormulaSet (FormulaSet<PropT> s) {
+    closure = s.closure;
+    words = s.words.clone();
+  }
+
+  Closure<PropT> getClosure () {
+    return closure;
+  }
+
+  boolean contains (Formula<PropT> f) {
+    int i = closure.indexOf(f);
+    return i >= 0 && (words[i >>> 6] & (1L << i)) != 0;
+  }
+
+  void add (Formula<PropT> f) {
+    int i = closure.indexOf(f);
+    assert i >= 0 : "not a subformula: " + f;
+    words[i >>> 6] |= 1L << i;
+  }
+
+  void remove (Formula<PropT> f) {
+    int i = closure.indexOf(f);
+    if (i >= 0)
+      words[i >>> 6] &= ~(1L << i);
+  }
+
+  void addAll (FormulaSet<PropT> s) {
+    assert s.closure == closure : "sets over different closures";
+    for (int w = 0; w < words.length; w++)
+      words[w] |= s.words[w];
+  }
+
+  boolean isEmpty () {
+    for (long w: words)
+      if (w != 0)
+        return false;
+    return true;
+  }
+
+  int size () {
+    int n = 0;
+    for (long w: words)
+      n += Long.bitCount(w);
+    return n;
+  }
+
+  /**
+   * Removes the formula with the smallest ID.
+   * @return that formula
+   */
+  Formula<PropT> pollFirst () {
+    int i = nextIndex(0);
+    if (i < 0)
+      throw new NoSuchElementException();
+    words[i >>> 6] &= ~(1L << i);
+    return closure.get(i);
+  }
+
+  /**
+   * @return the members in order of their IDs
+   */
+  ArrayList<Formula<PropT>> toList () {
+    ArrayList<Formula<PropT>> l = new ArrayList<Formula<PropT>>(size());
+    for (Formula<PropT> f: this)
+      l.add(f);
+    return l;
+  }
+
+  private int nextIndex (int from) {
+    int w = from >>> 6;
+    if (w >= words.length)
+      return -1;
+    long word = words[w] & (-1L << from);
+    while (true) {
+      if (word != 0)
+        return (w << 6) + Long.numberOfTrailingZeros(word);
+      if (++w == words.length)
+        return -1;
+      word = words[w];
+    }
+  }
+
+  @Override
+  public Iterator<Formula<PropT>> iterator () {
+    return new Iterator<Formula<PropT>>() {
+      private int next = nextIndex(0);
+
+      @Override
+      public boolean hasNext () {
+        return next >= 0;
+      }
+
+      @Override
+      public Formula<PropT> next () {
+        if (next < 0)
+          throw new NoSuchElementException();
+        Formula<PropT> f = closure.get(next);
+        next = nextIndex(next + 1);
+        return f;
+      }
+
+      @Override
+      public void remove () {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  @Override
+  public boolean equals (Object obj) {
+    if (!(obj instanceof FormulaSet<?>))
+      return false;
+    FormulaSet<?> s = (FormulaSet<?>)obj;
+    return closure == s.closure && Arrays.equals(words, s.words);
+  }
+
+  @Override
+  public int hashCode () {
+    return Arrays.hashCode(words);
+  }
+
+  @Override
+  public String toString () {
+    return toList().toString();
+  }
+}
@@ -0,0 +1,119 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.ltl.trans;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Results of {@link Formula#is_synt_implied(FormulaSet, FormulaSet)}
+ * for one translation, keyed on the formula and the contents of the
+ * old and next sets it was checked against. Sibling nodes of the
+ * tableau share most of these sets, so the same checks come up
+ * again and again.
+ *
+ * The memo stops growing once it holds {@link #MAX_ENTRIES} results.
+ * It may be used by several threads at once.
+ */
+class ImplicationMemo<PropT> {
+  static final int MAX_ENTRIES = 1 << 16;
+
+  private final ConcurrentHashMap<Key<PropT>, Boolean> results =
+    new ConcurrentHashMap<Key<PropT>, Boolean>();
+  private final AtomicLong hits = new AtomicLong ();
+  private final AtomicLong misses = new AtomicLong ();
+
+  /**
+   * A formula together with an old and a (possibly null) next set.
+   * Keys used for lookup refer to the sets of a tableau node, which
+   * keep changing, so the sets are copied before a key is stored.
+   */
+  private static final class Key<PropT> {
+    private final Formula<PropT> form;
+    private final FormulaSet<PropT> old;
+    private final FormulaSet<PropT> next;
+    private final int hash;
+
+    Key (Formula<PropT> form, FormulaSet<PropT> old, FormulaSet<PropT> next) {
+      this.form = form;
+      this.old = old;
+      this.next = next;
+      int h = form.getId () * 31 + old.hashCode ();
+      if (next != null)
+        h = h * 31 + next.hashCode ();
+      hash = h;
+    }
+
+    Key<PropT> snapshot () {
+      return new Key<PropT> (form, new FormulaSet<PropT> (old),
+          next == null ? null : new FormulaSet<PropT> (next));
+    }
+
+    @Override
+    public int hashCode () {
+      return hash;
+    }
+
+    @Override
+    public boolean equals (Object obj) {
+      if (!(obj instanceof Key<?>))
+        return false;
+      Key<?> k = (Key<?>)obj;
+      return hash == k.hash && form == k.form && old.equals (k.old) &&
+        (next == null ? k.next == null : next.equals (k.next));
+    }
+  }
+
+  /**
+   * Looks up whether a formula is syntactically implied by the given
+   * sets, checking and remembering it if it has not been seen yet.
+   * @param form
+   * @param old
+   * @param next may be null
+   * @return whether form is implied
+   */
+  boolean is_synt_implied (Formula<PropT> form, FormulaSet<PropT> old,
+                           FormulaSet<PropT> next) {
+    Key<PropT> key = new Key<PropT> (form, old, next);
+    Boolean result = results.get (key);
+    if (result != null) {
+      hits.incrementAndGet ();
+      return result;
+    }
+    misses.incrementAndGet ();
+    boolean implied = form.compute_synt_implied (old, next);
+    if (results.size () < MAX_ENTRIES)
+      results.put (key.snapshot (), implied);
+    return implied;
+  }
+
+  /**
+   * @return number of checks answered from the memo
+   */
+  long getHits () {
+    return hits.get ();
+  }
+
+  /**
+   * @return number of checks that had to be computed
+   */
+  long getMisses () {
+    return misses.get ();
+  }
+}
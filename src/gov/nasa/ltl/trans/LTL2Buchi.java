@@ -24,11 +24,40 @@ import gov.nasa.ltl.graph.*;
 import gov.nasa.ltl.graphio.Writer;
 
 import java.io.*;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * DOCUMENT ME!
  */
 public class LTL2Buchi {
+	/**
+	 * Debugging output of the translation methods which take no
+	 * {@link TranslationOptions}.
+	 * @deprecated pass {@link TranslationOptions} instead
+	 */
+	@Deprecated
 	public static boolean debug = false; // TODO: make this private again... eventually
 
 	public static void main(String[] args) {
@@ -37,12 +66,18 @@ public class LTL2Buchi {
 		boolean bisim = true;
 		boolean fairSim = true;
 		boolean file_provided = false;
+		boolean debugOutput = true;
+		Translator.Algorithm algorithm = Translator.Algorithm.LTL2BUCHI;
 		Writer.Format format = Writer.Format.FSP;
-		debug = true;
+		DiskTranslationCache cache = null;
+		String batch = null;
+		int threads = Runtime.getRuntime().availableProcessors();
+		File outDir = null;
+		String socket = null;
 
-		System.out.println("\nAuthors Dimitra Giannakopoulou & Flavio Lerda, \n(c) 2001,2003 NASA Ames Research Center\n");
-
-		Translator.setAlgorithm(Translator.Algorithm.LTL2BUCHI);
+		// batch output goes to stdout, so nothing else may
+		if (!Arrays.asList(args).contains("-batch"))
+			System.out.println("\nAuthors Dimitra Giannakopoulou & Flavio Lerda, \n(c) 2001,2003 NASA Ames Research Center\n");
 
 		if (args.length != 0) {
 			for (int i = 0; i < args.length; i++) {
@@ -53,9 +88,9 @@ public class LTL2Buchi {
 
 					if (i < args.length) {
 						if (args[i].equals("ltl2buchi")) {
-							Translator.setAlgorithm(Translator.Algorithm.LTL2BUCHI);
+							algorithm = Translator.Algorithm.LTL2BUCHI;
 						} else if (args[i].equals("ltl2aut")) {
-							Translator.setAlgorithm(Translator.Algorithm.LTL2AUT);
+							algorithm = Translator.Algorithm.LTL2AUT;
 						} else {
 							usage_warning();
 
@@ -73,7 +108,68 @@ public class LTL2Buchi {
 				} else if (args[i].equals("-nofsim")) {
 					fairSim = false;
 				} else if (args[i].equals("-nodebug")) {
-					debug = false;
+					debugOutput = false;
+				} else if (args[i].equals("-batch")) {
+					i++;
+
+					if (i < args.length) {
+						batch = args[i];
+					} else {
+						usage_warning();
+
+						return;
+					}
+				} else if (args[i].equals("-j")) {
+					i++;
+
+					if (i < args.length) {
+						try {
+							threads = Integer.parseInt(args[i]);
+						} catch (NumberFormatException e) {
+							threads = 0;
+						}
+						if (threads < 1) {
+							usage_warning();
+
+							return;
+						}
+					} else {
+						usage_warning();
+
+						return;
+					}
+				} else if (args[i].equals("-server")) {
+					i++;
+
+					if (i < args.length) {
+						socket = args[i];
+					} else {
+						usage_warning();
+
+						return;
+					}
+				} else if (args[i].equals("-outdir")) {
+					i++;
+
+					if (i < args.length) {
+						outDir = new File(args[i]);
+						outDir.mkdirs();
+					} else {
+						usage_warning();
+
+						return;
+					}
+				} else if (args[i].equals("-cache")) {
+					i++;
+
+					if (i < args.length) {
+						cache = new DiskTranslationCache(new File(args[i]),
+						    DiskTranslationCache.DEFAULT_MAX_BYTES);
+					} else {
+						usage_warning();
+
+						return;
+					}
 				} else if (args[i].equals("-o")) {
 					i++;
 
@@ -114,12 +210,44 @@ public class LTL2Buchi {
 			}
 		}
 
+		if (socket != null) {
+			try {
+				Path path = Paths.get(socket);
+				removeStaleSocket(path);
+				TranslationServer server = new TranslationServer(
+				    UnixDomainSocketAddress.of(path), 4 * threads, threads);
+				System.out.println("Listening on " + path);
+				server.serve();
+			} catch (IOException ex) {
+				System.out.println("Error: " + ex);
+			}
+			return;
+		}
+
+		if (batch != null) {
+			TranslationOptions options = new TranslationOptions(algorithm,
+			    rewrite, bisim, fairSim, false);
+			try {
+				BufferedReader in = batch.equals("-")
+				    ? new BufferedReader(new InputStreamReader(System.in))
+				    : new BufferedReader(new FileReader(batch));
+				translateLines(in, options, format, threads, outDir, cache);
+				in.close();
+			} catch (IOException ex) {
+				System.out.println("Error: " + ex);
+			}
+			return;
+		}
+
 		if (!file_provided) {
 			ltl = readLTL();
 		}
 
 		try {
-			Graph<String> g = translate(ltl, rewrite, bisim, fairSim);
+			TranslationOptions options = new TranslationOptions(algorithm,
+			    rewrite, bisim, fairSim, debugOutput);
+			Graph<String> g = cache == null ? translate(ltl, options)
+			    : cache.translate(ltl, options);
 			Writer<String> w = Writer.getWriter (format, System.out);
 			w.write (g);
 			System.out.println("\n***********************\n");
@@ -128,15 +256,184 @@ public class LTL2Buchi {
 		}
 	}
 
+	/**
+	 * Translates formulae read one per line, skipping blank lines, on a
+	 * pool of worker threads. For every formula, in input order, this
+	 * prints a line "--- formula N: F", where N is the line number and F
+	 * the formula, then the automaton, unless it is written to the file
+	 * N.ext in outDir, and then a line "--- end N: ok, T ms" or
+	 * "--- end N: error E, T ms", where T is the time the translation
+	 * took. Only a bounded number of formulae are read ahead.
+	 */
+	/**
+	 * Deletes a socket file left behind by a server which is no longer
+	 * running, so that a new server can bind to the path. Anything else
+	 * at the path is left alone.
+	 * @param path
+	 * @throws IOException if path exists but is not a socket, or a
+	 *    server is listening on it
+	 */
+	private static void removeStaleSocket(Path path) throws IOException {
+		if (!Files.exists(path, LinkOption.NOFOLLOW_LINKS))
+			return;
+		if (!isSocket(path))
+			throw new IOException(path + " exists and is not a socket");
+		boolean listening;
+		try {
+			SocketChannel.open(UnixDomainSocketAddress.of(path)).close();
+			listening = true;
+		} catch (IOException e) {
+			listening = false;
+		}
+		if (listening)
+			throw new IOException("a server is already listening on " + path);
+		Files.delete(path);
+	}
+
+	private static boolean isSocket(Path path) throws IOException {
+		try {
+			int mode = (Integer)Files.getAttribute(path, "unix:mode",
+			    LinkOption.NOFOLLOW_LINKS);
+			return (mode & 0170000) == 0140000; // S_IFSOCK
+		} catch (UnsupportedOperationException e) {
+			// sockets are neither files, directories nor links
+			return Files.readAttributes(path, BasicFileAttributes.class,
+			    LinkOption.NOFOLLOW_LINKS).isOther();
+		}
+	}
+
+	private static void translateLines(BufferedReader in,
+	    final TranslationOptions options, final Writer.Format format,
+	    int threads, final File outDir, final DiskTranslationCache cache)
+	    throws IOException {
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		ArrayDeque<Future<String>> pending = new ArrayDeque<Future<String>>();
+		String line;
+		int lineNo = 0;
+
+		try {
+			while ((line = in.readLine()) != null) {
+				final String formula = line.trim();
+				final int n = ++lineNo;
+
+				if (formula.length() == 0)
+					continue;
+				pending.addLast(pool.submit(new Callable<String>() {
+					public String call() {
+						return translateLine(n, formula, options, format, outDir,
+						    cache);
+					}
+				}));
+				if (pending.size() >= 4 * threads)
+					System.out.print(result(pending.removeFirst()));
+			}
+			while (!pending.isEmpty())
+				System.out.print(result(pending.removeFirst()));
+			System.out.flush();
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	private static String result(Future<String> f) {
+		try {
+			return f.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new LTLErrorException("interrupted");
+		} catch (ExecutionException e) {
+			throw new LTLErrorException(e.getCause().toString());
+		}
+	}
+
+	private static String translateLine(int n, String formula,
+	    TranslationOptions options, Writer.Format format, File outDir,
+	    DiskTranslationCache cache) {
+		StringBuilder sb = new StringBuilder();
+		String status;
+		long start = System.nanoTime();
+		long nanos;
+
+		sb.append("--- formula " + n + ": " + formula + "\n");
+		try {
+			Graph<String> g = cache == null ? translate(formula, options)
+			    : cache.translate(formula, options);
+			nanos = System.nanoTime() - start;
+			if (outDir == null) {
+				ByteArrayOutputStream text = new ByteArrayOutputStream();
+				PrintStream out = new PrintStream(text);
+				Writer.<String>getWriter(format, out).write(g);
+				out.flush();
+				sb.append(text.toString());
+				if (sb.charAt(sb.length() - 1) != '\n')
+					sb.append('\n');
+				status = "ok";
+			} else {
+				File file = new File(outDir, n + "." + extension(format));
+				PrintStream out = new PrintStream(new FileOutputStream(file));
+				Writer.<String>getWriter(format, out).write(g);
+				out.close();
+				status = "ok, written to " + file.getPath();
+			}
+		} catch (ParseErrorException e) {
+			nanos = System.nanoTime() - start;
+			status = "error " + e.getMessage();
+		} catch (IOException e) {
+			nanos = System.nanoTime() - start;
+			status = "error " + e;
+		} catch (RuntimeException e) {
+			nanos = System.nanoTime() - start;
+			status = "error " + e;
+		} catch (StackOverflowError e) {
+			nanos = System.nanoTime() - start;
+			status = "error " + e;
+		}
+		sb.append(String.format("--- end %d: %s, %.3f ms%n", n, status,
+		    nanos / 1e6));
+		return sb.toString();
+	}
+
+	private static String extension(Writer.Format format) {
+		switch (format) {
+		case SPIN:
+			return "pml";
+		case XML:
+			return "xml";
+		case SM:
+			return "sm";
+		default:
+			return "lts";
+		}
+	}
+
 	public static void reset_all_static() {
 		Formula.resetStatic();
 	}
 
 	public static Graph<String> translate(String formula, boolean rewrite,
 			boolean bisim, boolean fair_sim) throws ParseErrorException {
+		return translate(formula, legacyOptions(rewrite, bisim, fair_sim));
+	}
+
+	public static Graph<String> translate(String formula,
+			TranslationOptions options) throws ParseErrorException {
 		//	System.out.println("Translating formula: " + formula);
 		// System.out.println();
-		return translate(Parser.parse (formula), rewrite, bisim, fair_sim);
+		// a private factory, so concurrent translations don't share a cache
+		return translate(Parser.parse (formula, new FormulaFactory ()),
+		    options);
+	}
+
+	/**
+	 * Options equivalent to the given flags and the deprecated static
+	 * settings {@link Translator#setAlgorithm(Translator.Algorithm)}
+	 * and {@link #debug}.
+	 */
+	@SuppressWarnings("deprecation")
+	static TranslationOptions legacyOptions(boolean rewrite,
+	    boolean bisim, boolean fair_sim) {
+	  return new TranslationOptions(Translator.getAlgorithm(), rewrite,
+	      bisim, fair_sim, debug);
 	}
 
 	/**
@@ -146,8 +443,9 @@ public class LTL2Buchi {
 	 * @param gba
 	 * @param op
 	 */
-	private static <PropT> void printStats(Graph<PropT> gba, String op) {
-	  if (!debug)
+	private static <PropT> void printStats(Graph<PropT> gba, String op,
+	    TranslationOptions options) {
+	  if (!options.isDebug())
 	    return;
       System.out.println("\n***********************");
       System.out.println("\n" + op);
@@ -157,33 +455,157 @@ public class LTL2Buchi {
 	
 	public static <PropT> Graph<PropT> translate(Formula<PropT> formula,
 	    boolean rewrite, boolean bisim, boolean fair_sim) {
-        if (rewrite) {
-          formula = new Rewriter<PropT> (formula).rewrite();
-          if (debug)
+		return translate(formula, legacyOptions(rewrite, bisim, fair_sim));
+	}
+
+	/**
+	 * Translates a formula into a Büchi automaton, within the budget
+	 * given by the options. If the budget runs out while building the
+	 * automaton, a {@link BudgetExceededException} is thrown. If it runs
+	 * out during the reductions which follow, the same happens unless
+	 * the options ask for partial results, in which case the automaton
+	 * reduced so far is returned.
+	 * @param formula
+	 * @param options
+	 * @return Büchi automaton
+	 * @throws BudgetExceededException
+	 */
+	public static <PropT> Graph<PropT> translate(Formula<PropT> formula,
+	    TranslationOptions options) {
+		Budget budget = options.startBudget();
+        if (options.isRewrite()) {
+          Rewriter<PropT> rewriter = new Rewriter<PropT> (formula);
+          formula = rewriter.rewrite();
+          if (options.isDebug()) {
+            if (!rewriter.isComplete())
+              System.out.println("Rewriting stopped after " +
+                                 Rewriter.DEFAULT_FUEL + " steps");
             System.out.println("Rewritten as      : " + formula + "\n");
+          }
         }
-		Graph<PropT> gba = Translator.translate(formula);
-		printStats(gba, "Generalized buchi automaton generated");
+		Graph<PropT> gba = Translator.translate(formula, options, budget);
+		printStats(gba, "Generalized buchi automaton generated", options);
 		gba = SuperSetReduction.reduce(gba);
-		printStats(gba, "Superset reduction");
-		Graph<PropT> ba = Degeneralize.degeneralize(gba);
-		printStats(ba, "Degeneralized buchi automaton generated");
-		ba = SCCReduction.reduce(ba);
-	    printStats(ba, "Strongly connected component reduction");
-		if (bisim) {
-			ba = Simplify.simplify(ba);
-		    printStats(ba, "Bisimulation applied");
-		}
-		if (fair_sim) {
-			ba = SFSReduction.reduce(ba);
-		    printStats(ba, "Fair simulation applied");
-		}
-		if (debug)
+		printStats(gba, "Superset reduction", options);
+		Graph<PropT> ba = Degeneralize.degeneralize(gba, budget);
+		printStats(ba, "Degeneralized buchi automaton generated", options);
+		try {
+			ba = SCCReduction.reduce(ba);
+		    printStats(ba, "Strongly connected component reduction", options);
+			if (options.isBisim()) {
+				ba = Simplify.simplify(ba, budget);
+			    printStats(ba, "Bisimulation applied", options);
+			}
+			if (options.isFairSim()) {
+				ba = SFSReduction.reduce(ba, budget);
+			    printStats(ba, "Fair simulation applied", options);
+			}
+		} catch (BudgetExceededException e) {
+			if (!options.isPartialResults())
+				throw e;
+			if (options.isDebug())
+				System.out.println("\nStopped reducing, " + e.getMessage());
+		}
+		if (options.isDebug())
 		  System.out.println("***********************\n");
-		reset_all_static();
+		// only the shared factory is reset; others belong to the caller
+		if (formula.getFactory () == FormulaFactory.getDefault ())
+		  reset_all_static();
 		return ba;
 	}
 
+	/**
+	 * Translates a batch of formulae on the given executor, with one task
+	 * per available processor. Each task takes the next formula nobody
+	 * has started on and translates a copy of it made in the task's own
+	 * {@link FormulaFactory}, so the formulae may come from any factory,
+	 * shared or not, and are left unchanged. Formulae translated by the
+	 * same task share interned subformulae.
+	 *
+	 * Errors, including running out of budget, are reported in the
+	 * results rather than thrown. If the calling thread is interrupted
+	 * while waiting, formulae not started yet are reported as
+	 * interrupted, and the interrupt is passed on once the rest are done.
+	 * @param formulae
+	 * @param options
+	 * @param executor runs the tasks; if it rejects one, the calling
+	 *    thread runs it
+	 * @return one result per formula, in the order of formulae
+	 */
+	public static <PropT> List<TranslationResult<PropT>> translateAll(
+	    Collection<Formula<PropT>> formulae, final TranslationOptions options,
+	    Executor executor) {
+		final List<Formula<PropT>> items = new ArrayList<Formula<PropT>>(formulae);
+		final List<TranslationResult<PropT>> results =
+		    new ArrayList<TranslationResult<PropT>>(
+		        Collections.<TranslationResult<PropT>>nCopies(items.size(), null));
+		final AtomicInteger next = new AtomicInteger();
+		final AtomicBoolean cancelled = new AtomicBoolean();
+		int tasks = Math.min(items.size(),
+		    Runtime.getRuntime().availableProcessors());
+		final CountDownLatch done = new CountDownLatch(tasks);
+		Runnable task = new Runnable() {
+			public void run() {
+				try {
+					FormulaFactory factory = new FormulaFactory();
+					int i;
+
+					while ((i = next.getAndIncrement()) < items.size()) {
+						if (cancelled.get())
+							results.set(i, new TranslationResult<PropT>(items.get(i),
+							    null, new BudgetExceededException(
+							        BudgetExceededException.Reason.INTERRUPTED,
+							        "interrupted"), 0));
+						else
+							results.set(i, translateItem(items.get(i), factory,
+							    options));
+					}
+				} finally {
+					done.countDown();
+				}
+			}
+		};
+
+		for (int t = 0; t < tasks; t++) {
+			try {
+				executor.execute(task);
+			} catch (RejectedExecutionException e) {
+				task.run();
+			}
+		}
+		boolean interrupted = false;
+		while (true) {
+			try {
+				done.await();
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+				cancelled.set(true);
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+		return results;
+	}
+
+	private static <PropT> TranslationResult<PropT> translateItem(
+	    Formula<PropT> formula, FormulaFactory factory,
+	    TranslationOptions options) {
+		long start = System.nanoTime();
+
+		try {
+			Graph<PropT> g = translate(factory.copy(formula), options);
+			return new TranslationResult<PropT>(formula, g, null,
+			    System.nanoTime() - start);
+		} catch (RuntimeException e) {
+			return new TranslationResult<PropT>(formula, null, e,
+			    System.nanoTime() - start);
+		} catch (StackOverflowError e) {
+			return new TranslationResult<PropT>(formula, null, e,
+			    System.nanoTime() - start);
+		}
+	}
+
 	public static Graph<String> translate(String formula) throws ParseErrorException {
 		// To work with Bandera and JPF
 		return translate(formula, true, true, true);
@@ -218,6 +640,16 @@ public class LTL2Buchi {
 		System.out.println("\t\t \"-norw\" (no rewriting)");
 		System.out.println("\t\t \"-nobisim\" (no bisimulation reduction)");
 		System.out.println("\t\t \"-nofsim\" (no fair simulation reduction)");
+		System.out
+				.println("\t\t \"-batch <file>|-\" (translate one formula per line)");
+		System.out
+				.println("\t\t \"-j <n>\" (number of threads for -batch or -server)");
+		System.out
+				.println("\t\t \"-outdir <directory>\" (with -batch, write automata to files)");
+		System.out
+				.println("\t\t \"-server <socket>\" (serve requests on a Unix domain socket)");
+		System.out
+				.println("\t\t \"-cache <directory>\" (reuse automata stored there)");
 		System.out
 				.println("\t\t \"-o [fsp|promela|xml>\" (format of output; default is fsp)");
 
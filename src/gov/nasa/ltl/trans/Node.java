@@ -31,38 +31,39 @@ public class Node<PropT> implements Comparable<Node<PropT>> { // removed (non-co
   private boolean init_collapsed = false;
   private int            nodeId;
   private TreeSet<Node<PropT>>    incoming;
-  private TreeSet<Formula<PropT>> toBeDone;
-  private TreeSet<Formula<PropT>> old;
-  private TreeSet<Formula<PropT>> next;
+  private FormulaSet<PropT> toBeDone;
+  private FormulaSet<PropT> old;
+  private FormulaSet<PropT> next;
   private BitSet         accepting;
   private BitSet         right_of_untils;
   private Node<PropT>    OtherTransitionSource;
   private int equivalenceId;
   private Pool pool;
 
-  Node (Pool pool, int accepting_conds) {
+  Node (Pool pool, int accepting_conds, Closure<PropT> closure) {
     this.pool = pool;
     this.accepting_conds = accepting_conds;
     nodeId = pool.requestId ();
     incoming = new TreeSet<Node<PropT>>();
-    toBeDone = new TreeSet<Formula<PropT>>();
-    old = new TreeSet<Formula<PropT>>();
-    next = new TreeSet<Formula<PropT>>();
+    toBeDone = new FormulaSet<PropT>(closure);
+    old = new FormulaSet<PropT>(closure);
+    next = new FormulaSet<PropT>(closure);
     OtherTransitionSource = null;
     accepting = new BitSet(accepting_conds);
     right_of_untils = new BitSet(accepting_conds);
   }
 
   Node (Pool pool, int accepting_conds, TreeSet<Node<PropT>> in,
-        TreeSet<Formula<PropT>> newForm, TreeSet<Formula<PropT>> done,
-        TreeSet<Formula<PropT>> nx, BitSet acc, BitSet rous) {
+        FormulaSet<PropT> newForm, FormulaSet<PropT> done,
+        FormulaSet<PropT> nx, BitSet acc, BitSet rous) {
     this.pool = pool;
     this.accepting_conds = accepting_conds;
-    nodeId = pool.requestId ();
+    // a sibling from split gets its ID from assignId
+    nodeId = -1;
     incoming = new TreeSet<Node<PropT>>(in);
-    toBeDone = new TreeSet<Formula<PropT>>(newForm);
-    old = new TreeSet<Formula<PropT>>(done);
-    next = new TreeSet<Formula<PropT>>(nx);
+    toBeDone = new FormulaSet<PropT>(newForm);
+    old = new FormulaSet<PropT>(done);
+    next = new FormulaSet<PropT>(nx);
     OtherTransitionSource = null;
     accepting = new BitSet(accepting_conds);
     accepting.or(acc);
@@ -70,6 +71,15 @@ public class Node<PropT> implements Comparable<Node<PropT>> { // removed (non-co
     right_of_untils.or(rous);
   }
 
+  /**
+   * Gives a node created by splitting its ID. IDs are assigned in the
+   * order of expansion, whichever thread did the splitting.
+   */
+  void assignId () {
+    assert nodeId < 0 : "node " + nodeId + " already has an ID";
+    nodeId = pool.requestId ();
+  }
+
   public int getAcceptingConds () {
     return accepting_conds;
   }
@@ -78,7 +88,8 @@ public class Node<PropT> implements Comparable<Node<PropT>> { // removed (non-co
     int accepting_conds = form.init_acc_sets(); // first mark right forms of untils;
 
     //    System.out.println("Accepting conditions: " + accepting_conds);
-    Node<PropT> init = new Node<PropT> (pool, accepting_conds);
+    Node<PropT> init = new Node<PropT> (pool, accepting_conds,
+                                        new Closure<PropT> (form));
     assert init.nodeId == 0;
 
     if (form.getContent() != Formula.Content.TRUE) {
@@ -88,14 +99,22 @@ public class Node<PropT> implements Comparable<Node<PropT>> { // removed (non-co
     return init;
   }
 
-  public TreeSet<Formula<PropT>> getField_next () {
+  FormulaSet<PropT> getField_next () {
     return next;
   }
 
-  public TreeSet<Formula<PropT>> getField_old () {
+  FormulaSet<PropT> getField_old () {
     return old;
   }
 
+  BitSet getField_accepting () {
+    return accepting;
+  }
+
+  Closure<PropT> getClosure () {
+    return next.getClosure();
+  }
+
   public int getId () {
     return nodeId;
   }
@@ -190,43 +209,112 @@ public class Node<PropT> implements Comparable<Node<PropT>> { // removed (non-co
     }
   }
 
+  /**
+   * Expands this node and every node it gives rise to, adding the
+   * resulting states to the given automaton. Nodes waiting to be
+   * expanded are kept on the automaton’s worklist rather than on the
+   * call stack, or are handed to {@link ParallelExpansion} if the
+   * automaton is built in parallel.
+   * @param states automaton being built
+   * @return states
+   * @throws gov.nasa.ltl.graph.BudgetExceededException if the budget
+   *    of states runs out
+   */
   public Automaton<PropT> expand (Automaton<PropT> states) {
-    //		System.out.println("expand entered"); // debugging
-    Node<PropT> tempNode;
+    if (states.isParallel()) {
+      ParallelExpansion.expand(this, states);
+      return states;
+    }
+
+    ArrayList<Node<PropT>> spawned = new ArrayList<Node<PropT>>();
+    Node<PropT> current;
 
-    if (toBeDone.isEmpty()) {
-      if (nodeId != 0) {
-        update_accepting();
+    states.schedule(this);
+    while ((current = states.nextPending()) != null) {
+      states.checkBudget();
+      current.expandNode(states, spawned);
+      for (Node<PropT> nd: spawned) {
+        states.schedule(nd);
       }
+      spawned.clear();
+    }
+
+    return states;
+  }
+
+  /**
+   * Processes the formulae still to be done for this node until it
+   * is either discarded, merged with an existing state or stored.
+   * Nodes created by splitting and the successor of a stored node are
+   * appended to spawned, in the order they are created.
+   * @param states automaton being built
+   * @param spawned nodes still to be expanded
+   */
+  void expandNode (Automaton<PropT> states, List<Node<PropT>> spawned) {
+    int first = spawned.size();
+    boolean complete = expandLocal(spawned);
 
+    for (Node<PropT> nd: spawned.subList(first, spawned.size())) {
+      nd.assignId();
+    }
+    if (complete) {
+      Node<PropT> successor = storeExpanded(states);
+      if (successor != null) {
+        spawned.add(successor);
+      }
+    }
+  }
 
-      // System.out.println("New is empty!");
-      tempNode = states.alreadyThere(this);
+  /**
+   * Stores a node whose formulae have all been processed by
+   * {@link #expandLocal(List)}.
+   * @param states automaton being built
+   * @return the successor to be expanded if this node is a new state,
+   *    null if it was merged into an existing one
+   */
+  Node<PropT> storeExpanded (Automaton<PropT> states) {
+    if (nodeId != 0) {
+      update_accepting();
+    }
 
-      if (tempNode != null) {
-        // System.out.println("Node " + nodeId + " collapsed with " + tempNode.nodeId);
-        tempNode.modify(this);
+    // System.out.println("New is empty!");
+    if (!states.store(this)) {
+      return null;
+    }
 
-        return states;
-      } else {
-        Node<PropT> NewN = new Node<PropT> (pool, accepting_conds);
-        NewN.incoming.add(this);
-        NewN.toBeDone.addAll(next);
+    Node<PropT> NewN = new Node<PropT> (pool, accepting_conds,
+                                        next.getClosure ());
+    NewN.incoming.add(this);
+    NewN.toBeDone.addAll(next);
 
-        states.add(this);
+    return NewN;
+  }
 
-        return (NewN.expand(states));
+  /**
+   * Processes the formulae still to be done for this node. This only
+   * reads and changes this node and the siblings it splits off, so
+   * nodes can be processed on several threads; storing them is left to
+   * {@link #storeExpanded(Automaton)}. Siblings are appended to
+   * siblings in the order they are split off, without IDs.
+   * @param siblings nodes split off this one
+   * @return true if the node is to be stored, false if it was
+   *    discarded because of a contradiction
+   */
+  boolean expandLocal (List<Node<PropT>> siblings) {
+    //		System.out.println("expand entered"); // debugging
+    while (true) {
+      if (toBeDone.isEmpty()) {
+        return true;
       }
-    } else // toBeDone is not empty
-    {
+
+      // toBeDone is not empty
       Formula<PropT> temp_form;
-      Formula<PropT> ita = toBeDone.first();
-      toBeDone.remove(ita);
+      Formula<PropT> ita = toBeDone.pollFirst();
 
       //System.out.println("\n\nExpanding " + ita + " for node " + nodeId);
       if (testForContradictions(ita)) {
         //System.out.println("Finished expand - contradiction");
-        return states;
+        return false;
       }
 
       // no contradiction
@@ -235,12 +323,11 @@ public class Node<PropT> implements Comparable<Node<PropT>> { // removed (non-co
         right_of_untils.or(ita.get_rightOfWhichUntils());
       }
 
-      TreeSet<Formula<PropT>> set_checked_against = new TreeSet<Formula<PropT>>();
-      set_checked_against.addAll(old);
+      FormulaSet<PropT> set_checked_against = new FormulaSet<PropT>(old);
       set_checked_against.addAll(toBeDone);
 
       if (is_redundant(set_checked_against, next, ita)) {
-        return expand(states);
+        continue;
       }
 
       // not redundant either
@@ -257,11 +344,12 @@ public class Node<PropT> implements Comparable<Node<PropT>> { // removed (non-co
         case WEAK_UNTIL:
         case RELEASE:
         case OR:
-          Node<PropT> node2 = split(ita);
-          return node2.expand(this.expand(states));
+          // this node goes on, its sibling waits its turn
+          siblings.add(split(ita));
+          break;
         case NEXT:
           decompose_ands_for_next(ita.getSub1());
-          return expand(states);
+          break;
         case AND:
           temp_form = ita.getSub1();
 
@@ -275,11 +363,11 @@ public class Node<PropT> implements Comparable<Node<PropT>> { // removed (non-co
             toBeDone.add(temp_form);
           }
 
-          return expand(states);
+          break;
         default:
           System.out.println("default case of switch entered");
 
-          return null;
+          return false;
         }
       } else // ita represents a literal
       {
@@ -290,7 +378,6 @@ public class Node<PropT> implements Comparable<Node<PropT>> { // removed (non-co
         }
 
         //	System.out.println("added to " + nodeId + " formula " + ita);
-        return (expand(states));
       }
     }
   }
@@ -309,8 +396,8 @@ public class Node<PropT> implements Comparable<Node<PropT>> { // removed (non-co
     // just do now the bitwise or so that accepting gets updated
   }
 
-  private static <PropT> boolean is_redundant (TreeSet<Formula<PropT>> main_set, 
-                                               TreeSet<Formula<PropT>> next_set, 
+  private static <PropT> boolean is_redundant (FormulaSet<PropT> main_set, 
+                                               FormulaSet<PropT> next_set, 
                                                Formula<PropT> ita) {
     if ((ita.is_special_case_of_V(main_set)) || // my addition - correct??? 
         ((ita.is_synt_implied(main_set, next_set)) && 
@@ -328,13 +415,8 @@ public class Node<PropT> implements Comparable<Node<PropT>> { // removed (non-co
       return true;
     }
 
-    Iterator<Formula<PropT>> iterNext = next.iterator();
-    Formula<PropT> nextForm = null;
-
     // all formulas present must be of type V or W, otherwise false
-    while (iterNext.hasNext()) {
-      nextForm = iterNext.next();
-
+    for (Formula<PropT> nextForm: next) {
       if ((nextForm.getContent() != Formula.Content.RELEASE) && 
           (nextForm.getContent() != Formula.Content.WEAK_UNTIL)) {
         return false;
@@ -344,7 +426,12 @@ public class Node<PropT> implements Comparable<Node<PropT>> { // removed (non-co
     return true;
   }
 
-  private void modify (Node<PropT> current) {
+  /**
+   * Merges a node with the same next field (and the same accepting
+   * conditions, unless this is the initial node) into this state.
+   * @param current
+   */
+  void modify (Node<PropT> current) {
     boolean match = false;
     Node<PropT> Tail = this;
     Node<PropT> Alternative = this;
@@ -0,0 +1,99 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.ltl.trans;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Expansion of one tableau node as a fork-join task. The task processes
+ * the node's formulae and forks a task for every sibling it splits off,
+ * so the branches of a split are worked on concurrently. Storing nodes
+ * is left to {@link #expand(Node, Automaton)}, which takes the tasks in
+ * the order depth-first expansion takes the nodes. Nodes are therefore
+ * merged and numbered as depth-first, and the automaton is the same.
+ */
+@SuppressWarnings ("serial")
+final class ParallelExpansion<PropT> extends RecursiveAction {
+  private final Node<PropT> node;
+  private final List<ParallelExpansion<PropT>> siblings =
+    new ArrayList<ParallelExpansion<PropT>>();
+  private boolean complete;
+
+  private ParallelExpansion (Node<PropT> node) {
+    this.node = node;
+  }
+
+  /**
+   * Expands a node and every node it gives rise to. The formulae of
+   * nodes are processed in the common fork-join pool, while nodes are
+   * stored and successors created by the calling thread, in
+   * depth-first order.
+   * @param init node to start from
+   * @param states automaton being built
+   * @throws gov.nasa.ltl.graph.BudgetExceededException if the budget
+   *    of states runs out
+   */
+  static <PropT> void expand (Node<PropT> init, Automaton<PropT> states) {
+    ArrayDeque<ParallelExpansion<PropT>> pending =
+      new ArrayDeque<ParallelExpansion<PropT>>();
+    ParallelExpansion<PropT> current;
+
+    pending.addFirst (start (init));
+    try {
+      while ((current = pending.pollFirst ()) != null) {
+        states.checkBudget ();
+        current.join ();
+        // as Node.expandNode and Automaton.schedule do
+        for (ParallelExpansion<PropT> t: current.siblings) {
+          t.node.assignId ();
+          pending.addFirst (t);
+        }
+        if (current.complete) {
+          Node<PropT> successor = current.node.storeExpanded (states);
+          if (successor != null) {
+            pending.addFirst (start (successor));
+          }
+        }
+      }
+    } finally {
+      // only left over if the budget ran out
+      for (ParallelExpansion<PropT> t: pending) {
+        t.cancel (false);
+      }
+    }
+  }
+
+  private static <PropT> ParallelExpansion<PropT> start (Node<PropT> nd) {
+    ParallelExpansion<PropT> t = new ParallelExpansion<PropT> (nd);
+    t.fork ();
+    return t;
+  }
+
+  @Override
+  protected void compute () {
+    ArrayList<Node<PropT>> split = new ArrayList<Node<PropT>>();
+    complete = node.expandLocal (split);
+    for (Node<PropT> nd: split) {
+      siblings.add (start (nd));
+    }
+  }
+}
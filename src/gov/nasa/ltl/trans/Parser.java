@@ -18,6 +18,8 @@
  */
 package gov.nasa.ltl.trans;
 
+import java.util.ArrayList;
+
 /**
  * Written by Dimitra Giannakopoulou, 19 Jan 2001
  * Parser by Flavio Lerda, 8 Feb 2001
@@ -27,56 +29,105 @@ package gov.nasa.ltl.trans;
 public class Parser {
 
   /**
-   * DOCUMENT ME!
+   * Formula text with a cursor. Characters are read in place, and the
+   * end of the text is returned as {@link #END} rather than thrown.
    */
   private static class Input {
-    private StringBuilder sb;
+    static final int END = -1;
+
+    private final String str;
+    private int pos = 0;
 
     public Input (String str) {
-      sb = new StringBuilder (str);
+      this.str = str;
     }
 
-    public char get () throws EndOfInputException {
-      try {
-        return sb.charAt (0);
-      } catch (StringIndexOutOfBoundsException e) {
-        throw new EndOfInputException ();
+    /**
+     * @return the character at the cursor, or END
+     */
+    public int get () {
+      return pos < str.length () ? str.charAt (pos) : END;
+    }
+
+    /**
+     * Moves the cursor past any spaces.
+     * @return the character it stops at, or END
+     */
+    public int peek () {
+      while (pos < str.length () && str.charAt (pos) == ' ') {
+        pos++;
       }
+      return get ();
     }
 
-    public void skip () throws EndOfInputException {
-      try {
-        sb.deleteCharAt (0);
-      } catch (StringIndexOutOfBoundsException e) {
-        throw new EndOfInputException ();
+    public void skip () {
+      pos++;
+    }
+
+    /**
+     * Moves the cursor past the given character.
+     * @param ch
+     * @param message error if another character is at the cursor
+     * @throws ParseErrorException
+     */
+    public void expect (char ch, String message) throws ParseErrorException {
+      int c = get ();
+      if (c == END) {
+        throw new ParseErrorException ("unexpected end of input");
+      }
+      if (c != ch) {
+        throw new ParseErrorException (message);
       }
+      pos++;
     }
   }
 
   /**
-   * DOCUMENT ME!
+   * Parses a formula, creating it with the default
+   * {@link FormulaFactory}.
+   * @param str formula text
+   * @return formula
+   * @throws ParseErrorException
    */
-  @SuppressWarnings ("serial")
-  private static class EndOfInputException extends Exception {
-  }
-
   public static Formula<String> parse (String str) throws ParseErrorException { // "aObAc"
+    return parse (str, FormulaFactory.getDefault ());
+  }
 
-    Input i = new Input (str);
-
-    return parse (i, P_ALL);
+  /**
+   * Parses a formula, creating it and its subformulae with the
+   * given factory.
+   * @param str formula text
+   * @param factory factory the result belongs to
+   * @return formula
+   * @throws ParseErrorException
+   */
+  public static Formula<String> parse (String str, FormulaFactory factory)
+      throws ParseErrorException {
+    return parse (new Input (str), factory);
   }
 
-  private static Formula<String> parse (Input i, int precedence) throws ParseErrorException {
-    try {
-      Formula<String> formula;
-      char ch;
+  /* Operator precedence parsing with explicit stacks, so nesting depth
+   * is not limited by the Java stack. Operators wait on ops, innermost
+   * last, with '(' marking an open parenthesis; the binary ones are
+   * stored by their first character. An operator is applied once an
+   * operator of lower precedence, a closing parenthesis or the end of
+   * the input follows its operands, so binary operators associate to
+   * the right, and subformulae are created in the same order as by
+   * recursive descent.
+   */
+  private static Formula<String> parse (Input i, FormulaFactory factory)
+      throws ParseErrorException {
+    StringBuilder ops = new StringBuilder ();
+    ArrayList<Formula<String>> operands = new ArrayList<Formula<String>> ();
 
-      while (i.get () == ' ') {
-        i.skip ();
-      }
+    while (true) {
+      int ch = i.peek ();
+
+      // operand: prefix operators, then an atom
+      switch (ch) {
+      case Input.END:
+        throw new ParseErrorException ("unexpected end of input");
 
-      switch (ch = i.get ()) {
       case '/': // and
       case '&': // robbyjo's and
       case '\\': // or
@@ -86,55 +137,29 @@ public class Parser {
       case 'V': // release
       case 'M': // dual of W - weak release
       case ')':
-        throw new ParseErrorException ("invalid character: " + ch);
+        throw new ParseErrorException ("invalid character: " + (char)ch);
 
       case '!': // not
-        i.skip ();
-        formula = Formula.Not (parse (i, P_NOT));
-
-        break;
-
       case 'X': // next
+      case '(':
         i.skip ();
-        formula = Formula.Next (parse (i, P_NEXT));
+        ops.append ((char)ch);
 
-        break;
+        continue;
 
       case '[': // always
         i.skip ();
+        i.expect (']', "expected ]");
+        ops.append ('[');
 
-        if (i.get () != ']') {
-          throw new ParseErrorException ("expected ]");
-        }
-
-        i.skip ();
-        formula = Formula.Always (parse (i, P_ALWAYS));
-
-        break;
+        continue;
 
       case '<': // eventually
         i.skip ();
+        i.expect ('>', "expected >");
+        ops.append ('<');
 
-        if (i.get () != '>') {
-          throw new ParseErrorException ("expected >");
-        }
-
-        i.skip ();
-        formula = Formula.Eventually (parse (i, P_EVENTUALLY));
-
-        break;
-
-      case '(':
-        i.skip ();
-        formula = parse (i, P_ALL);
-
-        if (i.get () != ')') {
-          throw new ParseErrorException ("invalid character: " + ch);
-        }
-
-        i.skip ();
-
-        break;
+        continue;
 
       case '"':
 
@@ -142,217 +167,250 @@ public class Parser {
         i.skip ();
 
         while ((ch = i.get ()) != '"') {
-          sb.append (ch);
+          if (ch == Input.END) {
+            throw new ParseErrorException ("unexpected end of input");
+          }
+          sb.append ((char)ch);
           i.skip ();
         }
 
         i.skip ();
-
-        formula = Formula.Proposition (sb.toString ());
+        operands.add (factory.Proposition (sb.toString ()));
 
         break;
 
       default:
 
-        if (Character.isJavaIdentifierStart (ch)) {
+        if (Character.isJavaIdentifierStart ((char)ch)) {
           StringBuilder sbf = new StringBuilder ();
 
-          sbf.append (ch);
+          sbf.append ((char)ch);
           i.skip ();
 
-          try {
-            while (Character.isJavaIdentifierPart (ch = i.get ())
-                && (!Parser.is_reserved_char (ch))) {
-              sbf.append (ch);
-              i.skip ();
-            }
-          } catch (EndOfInputException e) {
-            // return Proposition(sbf.toString());
+          while ((ch = i.get ()) != Input.END
+              && Character.isJavaIdentifierPart ((char)ch)
+              && (!Parser.is_reserved_char ((char)ch))) {
+            sbf.append ((char)ch);
+            i.skip ();
           }
 
           String id = sbf.toString ();
 
           if (id.equals ("true")) {
-            formula = Formula.True ();
+            operands.add (factory.True ());
           } else if (id.equals ("false")) {
-            formula = Formula.False ();
+            operands.add (factory.False ());
           } else {
-            formula = Formula.Proposition (id);
+            operands.add (factory.Proposition (id));
           }
         } else {
-          throw new ParseErrorException ("invalid character: " + ch);
+          throw new ParseErrorException ("invalid character: " + (char)ch);
         }
 
         break;
       }
 
-      try {
-        while (i.get () == ' ') {
-          i.skip ();
+      // closing parentheses, then a binary operator or the end
+      while (true) {
+        ch = i.peek ();
+
+        if (ch == Input.END) {
+          reduce (ops, operands, -1, factory);
+          if (ops.length () > 0) {
+            throw new ParseErrorException ("unexpected end of input");
+          }
+          return operands.get (0);
         }
 
-        ch = i.get ();
-      } catch (EndOfInputException e) {
-        return formula;
+        if (ch != ')') {
+          break;
+        }
+        reduce (ops, operands, -1, factory);
+        if (ops.length () == 0) {
+          // the rest of the input is ignored
+          return operands.get (0);
+        }
+        ops.setLength (ops.length () - 1);
+        i.skip ();
       }
 
-      while (true) {
-        switch (ch) {
-        case '/': // and
+      switch (ch) {
+      case '/': // and
+        i.skip ();
+        i.expect ('\\', "expected \\");
 
-          if (precedence > P_AND) {
-            return formula;
-          }
+        break;
 
-          i.skip ();
+      case '&': // robbyjo's and
+        i.skip ();
+        i.expect ('&', "expected &&");
 
-          if (i.get () != '\\') {
-            throw new ParseErrorException ("expected \\");
-          }
+        break;
 
-          i.skip ();
-          formula = Formula.And (formula, parse (i, P_AND));
+      case '\\': // or
+        i.skip ();
+        i.expect ('/', "expected /");
 
-          break;
+        break;
 
-        case '&': // robbyjo's and
+      case '|': // robbyjo's or
+        i.skip ();
+        i.expect ('|', "expected ||");
 
-          if (precedence > P_AND) {
-            return formula;
-          }
+        break;
 
-          i.skip ();
+      case 'U': // until
+      case 'W': // weak until
+      case 'V': // release
+      case 'M': // weak_release
+        i.skip ();
 
-          if (i.get () != '&') {
-            throw new ParseErrorException ("expected &&");
-          }
+        break;
 
-          i.skip ();
-          formula = Formula.And (formula, parse (i, P_AND));
+      case '-': // implies
+        i.skip ();
+        i.expect ('>', "expected >");
 
-          break;
+        break;
 
-        case '\\': // or
+      case '!':
+      case 'X':
+      case '[':
+      case '<':
+      case '(':
+      default:
+        throw new ParseErrorException ("invalid character: " + (char)ch);
+      }
 
-          if (precedence > P_OR) {
-            return formula;
-          }
+      reduce (ops, operands, precedence ((char)ch), factory);
+      ops.append ((char)ch);
+    }
+  }
 
-          i.skip ();
+  /**
+   * Applies the waiting operators of higher precedence than the given
+   * one, innermost first, up to the innermost open parenthesis.
+   */
+  private static void reduce (StringBuilder ops,
+      ArrayList<Formula<String>> operands, int precedence,
+      FormulaFactory factory) {
+    int n;
 
-          if (i.get () != '/') {
-            throw new ParseErrorException ("expected /");
-          }
+    while ((n = ops.length ()) > 0 && ops.charAt (n - 1) != '('
+        && precedence (ops.charAt (n - 1)) > precedence) {
+      char op = ops.charAt (n - 1);
+      Formula<String> right = operands.remove (operands.size () - 1);
+      Formula<String> f;
 
-          i.skip ();
-          formula = Formula.Or (formula, parse (i, P_OR));
+      ops.setLength (n - 1);
 
-          break;
+      switch (op) {
+      case '!':
+        f = factory.Not (right);
 
-        case '|': // robbyjo's or
+        break;
 
-          if (precedence > P_OR) {
-            return formula;
-          }
+      case 'X':
+        f = factory.Next (right);
 
-          i.skip ();
+        break;
 
-          if (i.get () != '|') {
-            throw new ParseErrorException ("expected ||");
-          }
+      case '[':
+        f = factory.Always (right);
 
-          i.skip ();
-          formula = Formula.Or (formula, parse (i, P_OR));
+        break;
 
-          break;
+      case '<':
+        f = factory.Eventually (right);
 
-        case 'U': // until
+        break;
 
-          if (precedence > P_UNTIL) {
-            return formula;
-          }
+      default:
 
-          i.skip ();
-          formula = Formula.Until (formula, parse (i, P_UNTIL));
+        Formula<String> left = operands.remove (operands.size () - 1);
+
+        switch (op) {
+        case '/':
+        case '&':
+          f = factory.And (left, right);
 
           break;
 
-        case 'W': // weak until
+        case '\\':
+        case '|':
+          f = factory.Or (left, right);
 
-          if (precedence > P_WUNTIL) {
-            return formula;
-          }
+          break;
 
-          i.skip ();
-          formula = Formula.WUntil (formula, parse (i, P_WUNTIL));
+        case 'U':
+          f = factory.Until (left, right);
 
           break;
 
-        case 'V': // release
+        case 'W':
+          f = factory.WUntil (left, right);
 
-          if (precedence > P_RELEASE) {
-            return formula;
-          }
+          break;
 
-          i.skip ();
-          formula = Formula.Release (formula, parse (i, P_RELEASE));
+        case 'V':
+          f = factory.Release (left, right);
 
           break;
 
-        case 'M': // weak_release
+        case 'M':
+          f = factory.WRelease (left, right);
 
-          if (precedence > P_WRELEASE) {
-            return formula;
-          }
+          break;
 
-          i.skip ();
-          formula = Formula.WRelease (formula, parse (i, P_WRELEASE));
+        default: // '-'
+          f = factory.Implies (left, right);
 
           break;
+        }
 
-        case '-': // implies
+        break;
+      }
 
-          if (precedence > P_IMPLIES) {
-            return formula;
-          }
+      operands.add (f);
+    }
+  }
 
-          i.skip ();
+  private static int precedence (char op) {
+    switch (op) {
+    case '-':
+      return P_IMPLIES;
 
-          if (i.get () != '>') {
-            throw new ParseErrorException ("expected >");
-          }
+    case '\\':
+    case '|':
+      return P_OR;
 
-          i.skip ();
-          formula = Formula.Implies (formula, parse (i, P_IMPLIES));
+    case '/':
+    case '&':
+      return P_AND;
 
-          break;
+    case 'U':
+      return P_UNTIL;
 
-        case ')':
-          return formula;
+    case 'W':
+      return P_WUNTIL;
 
-        case '!':
-        case 'X':
-        case '[':
-        case '<':
-        case '(':
-        default:
-          throw new ParseErrorException ("invalid character: " + ch);
-        }
+    case 'V':
+      return P_RELEASE;
 
-        try {
-          while (i.get () == ' ') {
-            i.skip ();
-          }
+    case 'M':
+      return P_WRELEASE;
 
-          ch = i.get ();
-        } catch (EndOfInputException e) {
-          break;
-        }
-      }
+    case '!':
+      return P_NOT;
+
+    case 'X':
+      return P_NEXT;
+
+    case '[':
+      return P_ALWAYS;
 
-      return formula;
-    } catch (EndOfInputException e) {
-      throw new ParseErrorException ("unexpected end of input");
+    default: // '<'
+      return P_EVENTUALLY;
     }
   }
 
@@ -19,12 +19,15 @@
 package gov.nasa.ltl.trans;
 //Written by Dimitra Giannakopoulou, 19 Jan 2001
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
- * Counter which generates IDs for Node instances.
+ * Counter which generates IDs for Node instances. IDs may be requested
+ * from several threads at once.
  */
 class Pool {
-  private int     last_assigned = 0;
-  private boolean stopped = false;
+  private final AtomicInteger last_assigned = new AtomicInteger ();
+  private volatile boolean stopped = false;
 
   /**
    * Obtain new ID. Should not be called if this Pool instance
@@ -33,7 +36,7 @@ class Pool {
    */
   int requestId () {
     assert !stopped : "ID requested, but Pool is already stopped";
-    return last_assigned++;
+    return last_assigned.getAndIncrement ();
   }
   
   /**
@@ -43,8 +46,8 @@ class Pool {
    * @return last ID
    */
   int lastId () {
-    assert last_assigned > 0 : "no IDs assigned yet";
-    return last_assigned - 1;
+    assert last_assigned.get () > 0 : "no IDs assigned yet";
+    return last_assigned.get () - 1;
   }
 
   /**
@@ -54,7 +57,7 @@ class Pool {
    */
   int getIdCount () {
     assert stopped : "not done assigning IDs yet";
-    return last_assigned;
+    return last_assigned.get ();
   }
 
   /**
@@ -0,0 +1,97 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.ltl.trans;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Results of {@link Rewriter} for the formulae of one
+ * {@link FormulaFactory}, so that subformulae which several formulae
+ * share, such as common fairness assumptions, are rewritten only once.
+ * Formulae are interned, so they are looked up by ID.
+ *
+ * Results only hold for the rules they were found with; when the rules
+ * change, the memo is emptied. Once it holds {@link #MAX_ENTRIES}
+ * results, the least recently used ones are dropped. It may be used by
+ * several threads at once.
+ */
+class RewriteMemo {
+  static final int MAX_ENTRIES = 1 << 16;
+
+  private RuleIndex rules = null;
+  private final Map<Integer, Formula<?>> results =
+    new LinkedHashMap<Integer, Formula<?>> (16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry (Map.Entry<Integer, Formula<?>> e) {
+        return size () > MAX_ENTRIES;
+      }
+    };
+  private long hits = 0;
+  private long misses = 0;
+
+  /**
+   * @param rules rules the result has to be for
+   * @param f
+   * @return the rewritten form of f, or null if it is not known
+   */
+  @SuppressWarnings ("unchecked")
+  synchronized <PropT> Formula<PropT> get (RuleIndex rules, Formula<PropT> f) {
+    Formula<PropT> r = null;
+    if (rules == this.rules)
+      r = (Formula<PropT>)results.get (f.getId ());
+    if (r == null) {
+      misses++;
+    } else {
+      hits++;
+    }
+    return r;
+  }
+
+  /**
+   * Remembers the rewritten form of a formula.
+   * @param rules rules the result was found with
+   * @param f
+   * @param r rewritten form of f
+   */
+  synchronized <PropT> void put (RuleIndex rules, Formula<PropT> f,
+                                 Formula<PropT> r) {
+    if (rules != this.rules) {
+      results.clear ();
+      this.rules = rules;
+    }
+    results.put (f.getId (), r);
+  }
+
+  /**
+   * @return number of formulae whose rewritten form was remembered
+   */
+  synchronized long getHits () {
+    return hits;
+  }
+
+  /**
+   * @return number of formulae which had to be rewritten
+   */
+  synchronized long getMisses () {
+    return misses;
+  }
+}
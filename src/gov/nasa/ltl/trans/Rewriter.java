@@ -21,304 +21,262 @@ package gov.nasa.ltl.trans;
 import java.io.*;
 
 // Added by ckong - Sept 7, 2001
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.Hashtable;
+import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.List;
 
 
 /**
  * This class provides the means to rewriting a formula according to
  * some set of simplification rules. A rule is a pair of
  * {@link Formula}&lt;String&gt; instances, with the atoms of the first
- * formula being used as variables.
+ * formula being used as variables, which match atoms only.
  * 
- * Rules are read at class loading time from the file given by the
- * <code>gov.nasa.ltl.trans.rules</code> property, if it is set, and
- * by {@link RulesClass#getRules()} otherwise.
+ * Rules are read when the first rewriter is created, from the file
+ * given by the <code>gov.nasa.ltl.trans.rules</code> property, if it
+ * is set, and from {@link RulesClass} otherwise. Every rule is applied
+ * to negated subformulae too: the negation of its first formula is
+ * replaced by the negation of its second.
  * 
- * Rules are applied until no rule matches. This class does not ensure
- * that the process is finite, so the rules have to be chosen carefully.
+ * Subformulae are rewritten before the formulae containing them, and
+ * each is rewritten until no rule matches. This class does not ensure
+ * that the process is finite, so the rules have to be chosen carefully;
+ * as a safeguard, a rewriter gives up after a number of rule
+ * applications (its fuel). The results are remembered by the
+ * {@link FormulaFactory} of the formulae, so subformulae are rewritten
+ * once, however many formulae of the factory share them.
+ * 
+ * The rules are kept in a {@link FormulaFactory} of their own; the
+ * rewritten formula is built with the factory given to the constructor.
+ * The formula given is left unchanged.
  */
 public class Rewriter<PropT> {
-  private static Formula<String>[] rules;
-  static {
-    rules = null;
-    readRules (null);
-  }
+  private static RuleIndex rules = null;
   
+  /** Rule applications a rewriter makes unless told otherwise. */
+  public static final long DEFAULT_FUEL = 1 << 20;
+
   private Formula<PropT> formula;
-  private Hashtable<String, Formula<PropT>> matches;
-  /* Make a snapshot of the rules in case the static ones change
+  private final FormulaFactory factory;
+  /* Keep the rules we started with in case the static ones change
    * during rewriting.
    */
-  private Formula<String>[] instanceRules =
-    Arrays.copyOf (rules, rules.length);
-  /* Keep track of (sub)formulae we’ve already rewritten.
-   * The container class is so that we compare instances directly
-   * instead of checking the formula structure.
-   */
-  private class FormulaContainer {
-    private final Formula<PropT> f;
-    public FormulaContainer(Formula<PropT> fo) { f = fo; }
-    @Override public int hashCode () { return f.getId (); }
-    @Override public boolean equals (Object obj) {
-      return obj != null && obj instanceof Rewriter<?>.FormulaContainer 
-        && hashCode () == obj.hashCode ();}
-  }
-  private HashSet<FormulaContainer> rewritten;
+  private final RuleIndex instanceRules = loadedRules ();
+  private final RuleIndex.Matcher matcher = instanceRules.newMatcher ();
+  private final RewriteMemo rewritten;
+  private long fuel;
+  private boolean complete = true;
   
   /**
-   * Create a rewriter for the given formula, which might be modified
-   * by {@link #rewrite()}.
+   * Create a rewriter for the given formula.
    * @param f
    */
   public Rewriter (Formula<PropT> f) {
-    formula = f;
-    rewritten = new HashSet<FormulaContainer> ();
+    this (f, f.getFactory ());
+  }
+
+  /**
+   * Create a rewriter for the given formula.
+   * @param f
+   * @param factory factory f belongs to, used to build the result
+   */
+  public Rewriter (Formula<PropT> f, FormulaFactory factory) {
+    this (f, factory, DEFAULT_FUEL);
   }
 
   /**
-   * Initialise an instance for a subformula.
-   * @param f subformula
-   * @param r set of formulae which have already been rewritten by
-   *    {@link Rewriter} ancestors of this instance
+   * Create a rewriter for the given formula.
+   * @param f
+   * @param factory factory f belongs to, used to build the result
+   * @param fuel number of rule applications after which rewriting stops
    */
-  protected Rewriter (Formula<PropT> f, HashSet<FormulaContainer> r) {
+  public Rewriter (Formula<PropT> f, FormulaFactory factory, long fuel) {
+    assert f.getFactory () == factory : "formula from another factory";
     formula = f;
-    rewritten = r;
+    this.factory = factory;
+    this.fuel = fuel;
+    rewritten = factory.getRewriteMemo ();
   }
 
   /**
-   * Rewrite this instance’s formula according to the loaded rules. That
-   * formula might be modified in the process. This method is not
-   * guaranteed to terminate unless the rules are chosen suitably
-   * (e. g. only shortening and/or only away from some operators).
+   * Rewrite this instance’s formula according to the loaded rules.
+   * This method is not guaranteed to terminate unless the rules are
+   * chosen suitably (e. g. only shortening and/or only away from some
+   * operators).
    * @return instance of simplified formula; this is usually not
    *    the same instance which was passed to the constructor.
    */
   public Formula<PropT> rewrite () {
-    boolean negated = false;
-    boolean changed;
-
-    assert rules != null : "rules not loaded";
-    if (formula.isLiteral () || isRewritten (formula)) {
-      return formula;
-    }
-    do {
-      changed = false;
-      for (int i = 0; i + 1 < instanceRules.length; i += 2)
-        if (rewrite (instanceRules[i], instanceRules[i + 1]))
-          changed = true;
-      negated = !negated;
-      formula = Formula.Not (formula);
-    } while (changed || negated);
-    markRewritten (formula);
+    formula = rewrite (formula);
     return formula;
   }
-  
+
   /**
-   * Check for a given formula whether it is the end product
-   * of rewriting.
-   * @param f
-   * @return
+   * @return false if {@link #rewrite()} ran out of fuel, so rules may
+   *    still match its result; true else
    */
-  private boolean isRewritten (Formula<PropT> f) {
-    return rewritten.contains (new FormulaContainer (f));
+  public boolean isComplete () {
+    return complete;
   }
-  
+
   /**
-   * Mark a formula as the end product of rewriting.
+   * Rewrites the operands of a formula, then the formula itself, until
+   * no rule matches.
    * @param f
+   * @return rewritten formula
    */
-  private void markRewritten (Formula<PropT> f) {
-    rewritten.add (new FormulaContainer (f));
-  }
+  private Formula<PropT> rewrite (Formula<PropT> f) {
+    if (f.isLiteral ())
+      return f;
+    Formula<PropT> r = rewritten.get (instanceRules, f);
+    if (r != null)
+      return r;
 
-  /**
-   * Attempt to apply a rewrite rule to this rewriter’s formula.
-   * @param rule top half of the rule
-   * @param target bottom half of the rule
-   * @return true if the rule was applied, false else
-   */
-  private boolean rewrite (Formula<String> rule, Formula<String> target) {
-    Formula<PropT> f1 = formula.getSub1 (), f2 = formula.getSub2 ();
-    if (f1 != null)
-      f1 = new Rewriter<PropT> (f1, rewritten).rewrite ();
-    if (f2 != null)
-      f2 = new Rewriter<PropT> (f2, rewritten).rewrite ();
-    switch (formula.getContent ()) {
-    case AND:
-    case OR:
-    case UNTIL:
-    case WEAK_UNTIL:
-      formula.addLeft (f1);
-      formula.addRight (f2);
-      break;
-    case RELEASE: // Sub1, Sub2 are swapped in this case
-      formula.addRight (f1);
-      formula.addLeft (f2);
-      break;
-    case NEXT:
-    case NOT:
-      formula.addLeft (f1);
-      break;
-    case TRUE:
-    case FALSE:
-    case PROPOSITION:
-      return false;
+    r = f;
+    while (true) {
+      r = rewriteOperands (r);
+      RuleIndex.Rule rule = instanceRules.match (r, matcher);
+      if (rule == null)
+        break;
+      if (fuel <= 0) {
+        complete = false;
+        break;
+      }
+      fuel--;
+      r = substituteMatches (rule, rule.getTarget ());
+      if (r.isLiteral ())
+        break;
     }
-    matches = new Hashtable<String, Formula<PropT>> ();
-    if (match (formula, rule)) {
-      formula = substituteMatches (target);
-      return true;
+    // unfinished results must not be taken for normal forms
+    if (complete) {
+      rewritten.put (instanceRules, f, r);
+      rewritten.put (instanceRules, r, r);
     }
-    return false;
+    return r;
   }
 
-  /**
-   * Attempt to match this instance’s formula against the first part of
-   * a rewrite rule by checking that they have the same structure and
-   * by adding variable name/formula pairs to {@link #matches}.
-   * This method expects {@link #matches} to be empty when
-   * called from another method.
-   * @param f (sub)formula to match against a rule
-   * @param rule (sub)formula of the rule pattern
-   * @return true if the subformula matched the pattern; in this case,
-   *    {@link #matches} contains the necessary variable values.
-   *    False else.
-   */
-  private boolean match (Formula<PropT> f, Formula<String> rule) {
-    Formula<PropT> match;
-    Hashtable<String, Formula<PropT>> saved; 
+  private Formula<PropT> rewriteOperands (Formula<PropT> f) {
+    Formula<PropT> l = f.getLeft (), r = f.getRight ();
+    Formula<PropT> l1 = l == null ? null : rewrite (l);
+    Formula<PropT> r1 = r == null ? null : rewrite (r);
 
-    if (rule.getContent () != f.getContent ()) {
-      return false;
-    }
-    saved = new Hashtable<String, Formula<PropT>> (matches);
+    // The rules do not cover W; a W b is normalised to b V (a \/ b),
+    // as the rewriter did before it was indexed.
+    if (f.getContent () == Formula.Content.WEAK_UNTIL)
+      return rewriteOperands (factory.Release (r1, factory.Or (l1, r1)));
+    if (l1 == l && r1 == r)
+      return f;
     switch (f.getContent ()) {
-    case PROPOSITION:
-      match = (Formula<PropT>)matches.get (rule.getName ());
-      if (match == null) {
-        matches.put (rule.getName (), f);
-        return true;
-      }
-      return match == f;
     case AND:
+      return factory.And (l1, r1);
     case OR:
-      if (match (f.getSub1 (), rule.getSub1 ()) &&
-          match(f.getSub2 (), rule.getSub2 ())) {
-        return true;
-      }
-      matches = saved;
-      if (match (f.getSub2 (), rule.getSub1 ()) &&
-          match(f.getSub1 (), rule.getSub2 ())) {
-        return true;
-      }
-      matches = saved;
-      return false;
+      return factory.Or (l1, r1);
     case UNTIL:
+      return factory.Until (l1, r1);
     case RELEASE:
-    case WEAK_UNTIL:
-      if (match (f.getSub1 (), rule.getSub1 ()) &&
-          match(f.getSub2 (), rule.getSub2 ())) {
-        return true;
-      }
-      matches = saved;
-      return false;
+      return factory.Release (l1, r1);
     case NEXT:
+      return factory.Next (l1);
     case NOT:
-      if (match (f.getSub1 (), rule.getSub1 ())) {
-        return true;
-      }
-      matches = saved;
-      return false;
-    case TRUE:
-    case FALSE:
-      return true;
-    default: // can’t happen
-      return false;
+      return factory.Not (l1);
+    default:
+      return f;
     }
   }
 
   /**
    * Build a formula by replacing variables in the second part of a rule
-   * by the corresponding values from {@link #matches}, which has been
-   * initialised by a prior {@link #match(Formula, Formula)} call with
-   * the first part of the same rule.
-   * @param f second part of the rule
+   * by the atoms they were bound to by the rule's last match.
+   * @param rule
+   * @param f second part of the rule, or a subformula of it
    * @return formula after rule application
    */
-  private Formula<PropT> substituteMatches (Formula<String> f) {
+  private Formula<PropT> substituteMatches (RuleIndex.Rule rule,
+                                            Formula<String> f) {
     Formula<PropT> r = null, s, t;
     // This is a bit verbose, to make type inference happen.
     switch (f.getContent ()) {
     case PROPOSITION:
-      r = (Formula<PropT>)matches.get (f.getName ());
+      r = matcher.getBinding (rule.indexOf (f.getName ()));
       break;
     case AND:
-      s = substituteMatches (f.getSub1 ());
-      t = substituteMatches (f.getSub2 ());
-      r = Formula.And(s, t);
+      s = substituteMatches (rule, f.getSub1 ());
+      t = substituteMatches (rule, f.getSub2 ());
+      r = factory.And(s, t);
       break;
     case OR:
-      s = substituteMatches (f.getSub1 ());
-      t = substituteMatches (f.getSub2 ());
-      r = Formula.Or(s, t);
+      s = substituteMatches (rule, f.getSub1 ());
+      t = substituteMatches (rule, f.getSub2 ());
+      r = factory.Or(s, t);
       break;
     case UNTIL:
-      s = substituteMatches (f.getSub1 ());
-      t = substituteMatches (f.getSub2 ());
-      r = Formula.Until(s, t);
+      s = substituteMatches (rule, f.getSub1 ());
+      t = substituteMatches (rule, f.getSub2 ());
+      r = factory.Until(s, t);
       break;
     case RELEASE:
-      s = substituteMatches (f.getSub1 ());
-      t = substituteMatches (f.getSub2 ());
-      r = Formula.Release(t, s); // because left/right had been switched
+      s = substituteMatches (rule, f.getSub1 ());
+      t = substituteMatches (rule, f.getSub2 ());
+      r = factory.Release(t, s); // because left/right had been switched
       break;
     case WEAK_UNTIL:
-      s = substituteMatches (f.getSub1 ());
-      t = substituteMatches (f.getSub2 ());
-      r = Formula.WUntil(s, t);
+      s = substituteMatches (rule, f.getSub1 ());
+      t = substituteMatches (rule, f.getSub2 ());
+      r = factory.WUntil(s, t);
       break;
     case NEXT:
-      s = substituteMatches (f.getSub1 ());
-      r = Formula.Next(s);
+      s = substituteMatches (rule, f.getSub1 ());
+      r = factory.Next(s);
       break;
     case NOT:
-      s = substituteMatches (f.getSub1 ());
-      r = Formula.Not(s);
+      s = substituteMatches (rule, f.getSub1 ());
+      r = factory.Not(s);
       break;
     case TRUE:
-      r = Formula.True();
+      r = factory.True();
       break;
     case FALSE:
-      r = Formula.False();
+      r = factory.False();
     }
     return r;
   }
 
+  /**
+   * @return the current rules, reading the default ones if there are
+   *    none yet
+   */
+  private static synchronized RuleIndex loadedRules () {
+    if (rules == null)
+      readRules (null);
+    return rules;
+  }
+
   /**
    * Read a set of rewrite rules from a file or from {@link RulesClass}
    * and replace the current set of rules, if any.
    * If the given filename is not null, it is used. Else, if the
    * property <code>gov.nasa.ltl.trans.rules</code> is set, it is used.
-   * Else, the rules are obtained from {@link RulesClass#getRules()}.
+   * Else, the rules of {@link RulesClass#getRules()} are used, which
+   * are built without parsing.
    * @param filename
    */
-  @SuppressWarnings ("unchecked")
-  public static void readRules (String filename) {
+  public static synchronized void readRules (String filename) {
     String rulesPath = filename != null ? filename :
       System.getProperty ("gov.nasa.ltl.trans.rules");
     BufferedReader in = null;
     LinkedList<Formula<String>> rulesList = new LinkedList<Formula<String>> ();
+    FormulaFactory rulesFactory = new FormulaFactory ();
 
+    if (rulesPath == null) {
+      List<Formula<String>> formulae = RulesClass.getRuleFormulae (rulesFactory);
+      assert RulesClass.agrees (rulesFactory) :
+        "RulesClass.getRules () and getRuleFormulae () differ";
+      rules = compile (formulae, rulesFactory);
+      return;
+    }
     try {
-      if (rulesPath != null) {
-        FileReader fr = new FileReader (rulesPath);
-        in = new BufferedReader (fr);
-      } else
-        in = new BufferedReader (new StringReader (RulesClass.getRules ()));
+      FileReader fr = new FileReader (rulesPath);
+      in = new BufferedReader (fr);
     } catch (FileNotFoundException e) {
       System.err.println ("Rules file " + rulesPath + " not found.");
       System.exit (1);
@@ -339,13 +297,31 @@ public class Rewriter<PropT> {
       if (line.equals (""))
         continue;
       try {
-        rule = Parser.parse (line);
+        rule = Parser.parse (line, rulesFactory);
       } catch (ParseErrorException e) {
         System.err.println ("Exception while reading rules: " + e);
         System.exit (1);
       }
       rulesList.add (rule);
     }
-    rules = (Formula<String>[]) rulesList.toArray (new Formula[]{});
+    rules = compile (rulesList, rulesFactory);
+  }
+
+  /**
+   * @param rulesList first and second parts of the rules, alternating
+   * @param rulesFactory factory of the rules
+   * @return the rules, followed by their negations
+   */
+  private static RuleIndex compile (List<Formula<String>> rulesList,
+                                    FormulaFactory rulesFactory) {
+    ArrayList<RuleIndex.Rule> compiled = new ArrayList<RuleIndex.Rule> ();
+    for (int i = 0; i + 1 < rulesList.size (); i += 2)
+      compiled.add (new RuleIndex.Rule (rulesList.get (i),
+                                        rulesList.get (i + 1)));
+    for (int i = 0; i + 1 < rulesList.size (); i += 2)
+      compiled.add (new RuleIndex.Rule (
+                      rulesFactory.Not (rulesList.get (i)),
+                      rulesFactory.Not (rulesList.get (i + 1))));
+    return new RuleIndex (compiled);
   }
 }
\ No newline at end of file
@@ -0,0 +1,285 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.ltl.trans;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * {@link Rewriter} rules compiled into a discrimination tree. A rule
+ * variable only matches an atom, so a formula matches the left side of
+ * a rule only if it has the same operators in the same places, which
+ * is decided by walking the tree along the operators of the formula in
+ * prefix order. The leaf reached lists the rules of that shape; a rule
+ * then matches if its variables can be bound consistently.
+ *
+ * AND and OR match either way round, so a rule is entered once for
+ * each way of ordering its operands, in the order in which they used
+ * to be tried. Rules are tried in the order they were given.
+ *
+ * Instances are immutable, so rewriters in different threads can
+ * share them. The state of a match lives in a {@link Matcher}.
+ */
+final class RuleIndex {
+  private static final int CONTENTS = Formula.Content.values ().length;
+
+  /** A rule: left side, right side and the names of its variables. */
+  static final class Rule {
+    private final Formula<String> pattern;
+    private final Formula<String> target;
+    private final HashMap<String, Integer> vars = new HashMap<String, Integer> ();
+
+    Rule (Formula<String> pattern, Formula<String> target) {
+      this.pattern = pattern;
+      this.target = target;
+    }
+
+    Formula<String> getTarget () {
+      return target;
+    }
+
+    /**
+     * @param name variable of this rule
+     * @return index of the variable's value in {@link Matcher#getBinding(int)}
+     */
+    int indexOf (String name) {
+      Integer i = vars.get (name);
+      assert i != null : "unbound variable " + name;
+      return i;
+    }
+
+    private int var (String name) {
+      Integer i = vars.get (name);
+      if (i == null) {
+        i = vars.size ();
+        vars.put (name, i);
+      }
+      return i;
+    }
+
+    @Override
+    public String toString () {
+      return pattern + " => " + target;
+    }
+  }
+
+  /**
+   * One ordering of a rule's left side: for each atom or constant in
+   * prefix order, the index of its variable, or -1 for a constant.
+   */
+  private static final class Entry {
+    final Rule rule;
+    final int[] vars;
+
+    Entry (Rule rule, int[] vars) {
+      this.rule = rule;
+      this.vars = vars;
+    }
+  }
+
+  private static final class Tree {
+    final Tree[] next = new Tree[CONTENTS];
+    final ArrayList<Entry> entries = new ArrayList<Entry> ();
+  }
+
+  /**
+   * Reusable state of matching formulae against an index, for use by
+   * one thread.
+   */
+  static final class Matcher {
+    private final Formula<?>[] stack;
+    private final Formula<?>[] leaves;
+    private final Formula<?>[] bindings;
+
+    private Matcher (RuleIndex index) {
+      stack = new Formula<?>[index.maxSize + 1];
+      leaves = new Formula<?>[index.maxSize];
+      bindings = new Formula<?>[index.maxVars];
+    }
+
+    /**
+     * @param i variable index, as returned by {@link Rule#indexOf(String)}
+     * @return the atom bound to the variable by the last successful
+     *    {@link RuleIndex#match(Formula, Matcher)}
+     */
+    @SuppressWarnings ("unchecked")
+    <PropT> Formula<PropT> getBinding (int i) {
+      return (Formula<PropT>)bindings[i];
+    }
+  }
+
+  private final Tree root = new Tree ();
+  private final List<Rule> rules;
+  private int maxSize = 0;
+  private int maxVars = 0;
+
+  /**
+   * @param rules rules in the order they are to be tried
+   */
+  RuleIndex (List<Rule> rules) {
+    this.rules = new ArrayList<Rule> (rules);
+    for (Rule r: this.rules) {
+      for (List<Formula<String>> order: orderings (r.pattern)) {
+        Tree t = root;
+        int[] vars = new int[order.size ()];
+        int nv = 0;
+        for (Formula<String> f: order) {
+          int c = f.getContent ().ordinal ();
+          if (t.next[c] == null)
+            t.next[c] = new Tree ();
+          t = t.next[c];
+          switch (f.getContent ()) {
+          case PROPOSITION:
+            vars[nv++] = r.var (f.getName ());
+            break;
+          case TRUE:
+          case FALSE:
+            vars[nv++] = -1;
+            break;
+          default:
+            break;
+          }
+        }
+        t.entries.add (new Entry (r, Arrays.copyOf (vars, nv)));
+        maxSize = Math.max (maxSize, order.size ());
+      }
+      maxVars = Math.max (maxVars, r.vars.size ());
+    }
+  }
+
+  /**
+   * @return the rules, in the order they are tried
+   */
+  List<Rule> getRules () {
+    return rules;
+  }
+
+  Matcher newMatcher () {
+    return new Matcher (this);
+  }
+
+  /**
+   * Finds the first rule whose left side matches a formula. Nothing is
+   * allocated.
+   * @param f
+   * @param m state to use; holds the variable bindings afterwards
+   * @return the rule, or null if none matches
+   */
+  Rule match (Formula<?> f, Matcher m) {
+    Tree t = root;
+    int sp = 0, size = 0, nl = 0;
+
+    m.stack[sp++] = f;
+    while (sp > 0) {
+      Formula<?> g = m.stack[--sp];
+      if (++size > maxSize)
+        return null;
+      t = t.next[g.getContent ().ordinal ()];
+      if (t == null)
+        return null;
+      switch (g.getContent ()) {
+      case PROPOSITION:
+      case TRUE:
+      case FALSE:
+        m.leaves[nl++] = g;
+        break;
+      case NOT:
+      case NEXT:
+        m.stack[sp++] = g.getSub1 ();
+        break;
+      default:
+        m.stack[sp++] = g.getSub2 ();
+        m.stack[sp++] = g.getSub1 ();
+        break;
+      }
+    }
+
+    for (Entry e: t.entries) {
+      if (bind (e, m))
+        return e.rule;
+    }
+    return null;
+  }
+
+  private static boolean bind (Entry e, Matcher m) {
+    Arrays.fill (m.bindings, null);
+    for (int i = 0; i < e.vars.length; i++) {
+      int v = e.vars[i];
+      if (v < 0)
+        continue;
+      if (m.bindings[v] == null)
+        m.bindings[v] = m.leaves[i];
+      else if (m.bindings[v] != m.leaves[i])
+        return false;
+    }
+    return true;
+  }
+
+  /**
+   * @param p left side of a rule
+   * @return the subformulae of p in prefix order, once for every way of
+   *    ordering the operands of its ANDs and ORs; the operands as
+   *    written come first.
+   */
+  private static List<List<Formula<String>>> orderings (Formula<String> p) {
+    List<List<Formula<String>>> result = new ArrayList<List<Formula<String>>> ();
+    Formula<String> s1 = p.getSub1 (), s2 = p.getSub2 ();
+
+    switch (p.getContent ()) {
+    case PROPOSITION:
+    case TRUE:
+    case FALSE:
+      result.add (new ArrayList<Formula<String>> (Arrays.asList (p)));
+      break;
+    case NOT:
+    case NEXT:
+      for (List<Formula<String>> o: orderings (s1))
+        result.add (join (p, o, null));
+      break;
+    case AND:
+    case OR:
+      for (List<Formula<String>> o1: orderings (s1))
+        for (List<Formula<String>> o2: orderings (s2))
+          result.add (join (p, o1, o2));
+      for (List<Formula<String>> o1: orderings (s1))
+        for (List<Formula<String>> o2: orderings (s2))
+          result.add (join (p, o2, o1));
+      break;
+    default:
+      for (List<Formula<String>> o1: orderings (s1))
+        for (List<Formula<String>> o2: orderings (s2))
+          result.add (join (p, o1, o2));
+      break;
+    }
+    return result;
+  }
+
+  private static List<Formula<String>> join (Formula<String> p,
+                                             List<Formula<String>> first,
+                                             List<Formula<String>> second) {
+    List<Formula<String>> l = new ArrayList<Formula<String>> ();
+    l.add (p);
+    l.addAll (first);
+    if (second != null)
+      l.addAll (second);
+    return l;
+  }
+}
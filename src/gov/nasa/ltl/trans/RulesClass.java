@@ -18,11 +18,78 @@
 //
 package gov.nasa.ltl.trans;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * Default {@link Rewriter} rules.
  * @author ckong - Sept 7, 2001
  */
 public class RulesClass {
+  /**
+   * Builds the rules of {@link #getRules()} as formulae, without
+   * parsing them, so that they are quick to load.
+   * @param f factory to build the rules with
+   * @return first and second parts of the rules, alternating
+   */
+  static List<Formula<String>> getRuleFormulae (FormulaFactory f) {
+    Formula<String> p = f.Proposition ("p");
+    Formula<String> q = f.Proposition ("q");
+    Formula<String> r = f.Proposition ("r");
+    Formula<String> t = f.True ();
+    Formula<String> ff = f.False ();
+
+    return Arrays.asList (
+      f.And (p, p), p,
+      f.And (p, t), p,
+      f.And (p, ff), ff,
+      f.And (p, f.Not (p)), ff,
+      f.Or (p, p), p,
+      f.Or (p, t), t,
+      f.Or (p, ff), p,
+      f.Or (p, f.Not (p)), t,
+      f.Until (f.Next (p), f.Next (q)), f.Next (f.Until (p, q)),
+      f.And (f.Release (p, q), f.Release (p, r)), f.Release (p, f.And (q, r)),
+      f.Or (f.Release (p, r), f.Release (q, r)), f.Release (f.Or (p, q), r),
+      f.And (f.Next (p), f.Next (q)), f.Next (f.And (p, q)),
+      f.Next (t), t,
+      f.Until (p, ff), ff,
+      f.Or (f.Always (f.Eventually (p)), f.Always (f.Eventually (q))),
+        f.Always (f.Eventually (f.Or (p, q))),
+      f.Eventually (f.Next (p)), f.Next (f.Eventually (p)),
+      f.Always (f.Always (f.Eventually (p))), f.Always (f.Eventually (p)),
+      f.Eventually (f.Always (f.Eventually (p))), f.Always (f.Eventually (p)),
+      f.Next (f.Always (f.Eventually (p))), f.Always (f.Eventually (p)),
+      f.Eventually (f.And (p, f.Always (f.Eventually (q)))),
+        f.And (f.Eventually (p), f.Always (f.Eventually (q))),
+      f.Always (f.Or (p, f.Always (f.Eventually (q)))),
+        f.Or (f.Always (p), f.Always (f.Eventually (q))),
+      f.Next (f.And (p, f.Always (f.Eventually (q)))),
+        f.And (f.Next (p), f.Always (f.Eventually (q))),
+      f.Next (f.Or (p, f.Always (f.Eventually (q)))),
+        f.Or (f.Next (p), f.Always (f.Eventually (q))));
+  }
+
+  /**
+   * Checks that {@link #getRules()} parses to the formulae of
+   * {@link #getRuleFormulae(FormulaFactory)}, for use in assertions.
+   * If they agree, parsing creates no new formulae in f.
+   * @param f factory the rule formulae were built with
+   * @return whether both forms of the rules are the same
+   */
+  static boolean agrees (FormulaFactory f) {
+    List<Formula<String>> parsed = new ArrayList<Formula<String>> ();
+    try {
+      for (String line: getRules ().split ("\n"))
+        if (!line.equals (""))
+          parsed.add (Parser.parse (line, f));
+    } catch (ParseErrorException e) {
+      return false;
+    }
+    return parsed.equals (getRuleFormulae (f));
+  }
+
   public static String getRules () {
     return "p/\\p\n" + "p\n\n" + "p/\\true\n" + "p\n\n" + "p/\\false\n" + 
            "false\n\n" + "p/\\!p\n" + "false\n\n" + "p\\/p\n" + "p\n\n" + 
@@ -27,17 +27,17 @@ import java.util.*;
  * DOCUMENT ME!
  */
 public class Transition<PropT> {
-  private TreeSet<Formula<PropT>> propositions;
+  private List<Formula<PropT>> propositions;
   private int       pointsTo;
   private BitSet    accepting;
   private boolean   safe_accepting;
   private Guard<PropT> guard;
   private int       accepting_conds;
 
-  Transition (TreeSet<Formula<PropT>> prop, int nd_id, BitSet acc,
+  Transition (FormulaSet<PropT> prop, int nd_id, BitSet acc,
                      boolean safety, int accepting_conds) {
-    propositions = prop;
-    guard = new Guard<PropT> (prop);
+    propositions = prop.toList ();
+    guard = new Guard<PropT> (propositions);
     pointsTo = nd_id;
     this.accepting_conds = accepting_conds;
     accepting = new BitSet (accepting_conds);
@@ -57,13 +57,13 @@ public class Transition<PropT> {
       //    System.out.println("Entered the safety part of accepting conditions");
       //      if (safe_accepting == true) {
       //        System.out.println("But did I actually set it correctly?");
-      e.setBooleanAttribute("acc0", true);
+      e.setAccepting(0, true);
 
       //      }
     } else {
       for (int i = 0; i < accepting_conds; i++) {
         if (!accepting.get(i)) {
-          e.setBooleanAttribute("acc" + i, true);
+          e.setAccepting(i, true);
 
           //        System.out.println("Transition belongs to set " + i);
         }
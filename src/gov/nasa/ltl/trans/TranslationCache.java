@@ -0,0 +1,263 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.ltl.trans;
+
+import gov.nasa.ltl.graph.CompactGraph;
+import gov.nasa.ltl.graph.Edge;
+import gov.nasa.ltl.graph.Graph;
+import gov.nasa.ltl.graph.Node;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of Büchi automata in front of
+ * {@link LTL2Buchi#translate(Formula, TranslationOptions)}, for callers
+ * which translate the same formulae over and over. Entries are keyed on
+ * the structure of the formula, with atoms compared by
+ * {@link Object#equals(Object)}, and on the options. The least recently
+ * used entries are evicted once there are more than a given number of
+ * them or their graphs have more than a given number of nodes, edges
+ * and literals in total.
+ *
+ * The cache keeps its own copy of every automaton, as a
+ * {@link CompactGraph} which threads can read without locking, and
+ * hands out fresh copies, so callers may modify what they get. Translations with
+ * {@link TranslationOptions#isPartialResults()} set are not cached,
+ * since their result depends on timing. Failed translations are not
+ * cached either. Instances may be shared between threads; a formula
+ * missing from the cache may be translated by more than one of them.
+ *
+ * Optionally, atoms are ignored: formulae are cached by their
+ * {@link AtomRenaming canonical form}, so formulae which only differ in
+ * the names of their atoms share one translation, whose automaton is
+ * relabelled for each of them. The automata are equivalent to what
+ * translating each formula would give, but their nodes and edges may
+ * come in a different order.
+ */
+public class TranslationCache {
+  private final int maxEntries;
+  private final long maxSize;
+  private final boolean renameAtoms;
+  private final LinkedHashMap<Key, Entry> entries =
+    new LinkedHashMap<Key, Entry> (16, 0.75f, true);
+  private long size = 0;
+  private long hits = 0;
+  private long misses = 0;
+
+  /**
+   * Formula in prefix order, with operators and atoms, plus options.
+   * Taken before translating, since rewriting may change the formula.
+   */
+  private static final class Key {
+    private final ArrayList<Object> formula = new ArrayList<Object> ();
+    private final TranslationOptions options;
+    private final int hash;
+
+    Key (Formula<?> f, TranslationOptions options) {
+      flatten (f);
+      this.options = options;
+      hash = formula.hashCode () * 31 + options.hashCode ();
+    }
+
+    private void flatten (Formula<?> f) {
+      formula.add (f.getContent ());
+      if (f.getContent () == Formula.Content.PROPOSITION) {
+        formula.add (f.getName ());
+      }
+      if (f.getLeft () != null) {
+        flatten (f.getLeft ());
+      }
+      if (f.getRight () != null) {
+        flatten (f.getRight ());
+      }
+    }
+
+    @Override
+    public int hashCode () {
+      return hash;
+    }
+
+    @Override
+    public boolean equals (Object obj) {
+      if (!(obj instanceof Key))
+        return false;
+      Key k = (Key)obj;
+      return hash == k.hash && options.equals (k.options) &&
+        formula.equals (k.formula);
+    }
+  }
+
+  private static final class Entry {
+    private final CompactGraph<?> graph;
+    private final long size;
+
+    Entry (CompactGraph<?> graph, long size) {
+      this.graph = graph;
+      this.size = size;
+    }
+  }
+
+  /**
+   * @param maxEntries number of automata kept at most
+   * @param maxSize number of nodes, edges and guard literals kept at
+   *    most, over all automata
+   */
+  public TranslationCache (int maxEntries, long maxSize) {
+    this (maxEntries, maxSize, false);
+  }
+
+  /**
+   * @param maxEntries number of automata kept at most
+   * @param maxSize number of nodes, edges and guard literals kept at
+   *    most, over all automata
+   * @param renameAtoms share automata between formulae which differ
+   *    only in the names of their atoms
+   */
+  public TranslationCache (int maxEntries, long maxSize,
+                           boolean renameAtoms) {
+    assert maxEntries > 0 : "cache cannot hold any entries";
+    this.maxEntries = maxEntries;
+    this.maxSize = maxSize;
+    this.renameAtoms = renameAtoms;
+  }
+
+  /**
+   * Cached counterpart of
+   * {@link LTL2Buchi#translate(Formula, boolean, boolean, boolean)}.
+   * @param formula
+   * @param rewrite
+   * @param bisim
+   * @param fair_sim
+   * @return copy of the cached automaton
+   */
+  public <PropT> Graph<PropT> translate (Formula<PropT> formula,
+      boolean rewrite, boolean bisim, boolean fair_sim) {
+    return translate (formula,
+                      LTL2Buchi.legacyOptions (rewrite, bisim, fair_sim));
+  }
+
+  /**
+   * Looks up the automaton for a formula, translating the formula if
+   * it is not in the cache.
+   * @param formula
+   * @param options
+   * @return copy of the cached automaton
+   */
+  public <PropT> Graph<PropT> translate (Formula<PropT> formula,
+                                         TranslationOptions options) {
+    if (options.isPartialResults ()) {
+      return LTL2Buchi.translate (formula, options);
+    }
+    if (renameAtoms) {
+      AtomRenaming<PropT> renaming = new AtomRenaming<PropT> (formula);
+      return renaming.instantiate (lookup (renaming.getCanonical (), options));
+    }
+    return lookup (formula, options);
+  }
+
+  @SuppressWarnings ("unchecked")
+  private <PropT> Graph<PropT> lookup (Formula<PropT> formula,
+                                       TranslationOptions options) {
+    Key key = new Key (formula, options);
+    Entry e;
+    synchronized (this) {
+      e = entries.get (key);
+      if (e != null) {
+        hits++;
+      } else {
+        misses++;
+      }
+    }
+    if (e != null) {
+      return ((CompactGraph<PropT>)e.graph).toGraph ();
+    }
+
+    Graph<PropT> g = LTL2Buchi.translate (formula, options);
+    put (key, new Entry (new CompactGraph<PropT> (g), estimateSize (g)));
+    return g;
+  }
+
+  private synchronized void put (Key key, Entry e) {
+    if (e.size > maxSize) {
+      return;
+    }
+    Entry old = entries.put (key, e);
+    if (old != null) {
+      size -= old.size;
+    }
+    size += e.size;
+
+    Iterator<Map.Entry<Key, Entry>> i = entries.entrySet ().iterator ();
+    while (entries.size () > maxEntries || size > maxSize) {
+      Entry eldest = i.next ().getValue ();
+      size -= eldest.size;
+      i.remove ();
+    }
+  }
+
+  private static <PropT> long estimateSize (Graph<PropT> g) {
+    long s = 0;
+    for (Node<PropT> n: g.getNodes ()) {
+      s++;
+      for (Edge<PropT> e: n.getOutgoingEdges ()) {
+        s += 1 + e.getGuard ().size ();
+      }
+    }
+    return s;
+  }
+
+  public synchronized void clear () {
+    entries.clear ();
+    size = 0;
+  }
+
+  /**
+   * @return number of cached automata
+   */
+  public synchronized int size () {
+    return entries.size ();
+  }
+
+  /**
+   * @return number of nodes, edges and literals of the cached automata
+   */
+  public synchronized long getEstimatedSize () {
+    return size;
+  }
+
+  public synchronized long getHits () {
+    return hits;
+  }
+
+  public synchronized long getMisses () {
+    return misses;
+  }
+
+  /**
+   * @return fraction of lookups answered from the cache, or 0 if there
+   *    have been none
+   */
+  public synchronized double getHitRate () {
+    long lookups = hits + misses;
+    return lookups == 0 ? 0 : (double)hits / lookups;
+  }
+}
@@ -0,0 +1,252 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.ltl.trans;
+
+import gov.nasa.ltl.graph.Budget;
+
+/**
+ * Settings for one translation: the tableau algorithm, which optional
+ * steps of {@link LTL2Buchi#translate(Formula, TranslationOptions)} are
+ * applied, whether statistics are printed and the limits of the
+ * translation’s {@link Budget}. Instances are immutable,
+ * so callers in different threads can use different settings.
+ */
+public final class TranslationOptions {
+  /**
+   * Order in which tableau nodes are expanded. Depth-first yields the
+   * same automaton as the original recursive construction; breadth-first
+   * may merge and number states differently. Parallel processes the
+   * branches of a split concurrently in the common
+   * {@link java.util.concurrent.ForkJoinPool}, but stores nodes in
+   * depth-first order, so it yields the same automaton as depth-first.
+   */
+  public static enum ExpansionOrder { DEPTH_FIRST, BREADTH_FIRST, PARALLEL };
+
+  private final Translator.Algorithm algorithm;
+  private final ExpansionOrder expansionOrder;
+  private final boolean rewrite;
+  private final boolean bisim;
+  private final boolean fairSim;
+  private final boolean debug;
+  private final long timeoutMillis;
+  private final int maxTableauNodes;
+  private final int maxEdges;
+  private final boolean partialResults;
+
+  /**
+   * LTL2BUCHI with rewriting, bisimulation and fair simulation
+   * reduction, without debugging output.
+   */
+  public static final TranslationOptions DEFAULT =
+    new TranslationOptions (Translator.Algorithm.LTL2BUCHI,
+                            true, true, true, false);
+
+  /**
+   * @param algorithm tableau construction to use
+   * @param rewrite apply {@link Rewriter} before translating
+   * @param bisim apply {@link gov.nasa.ltl.graph.Simplify}
+   * @param fairSim apply {@link gov.nasa.ltl.graph.SFSReduction}
+   * @param debug print the automaton size after every step
+   */
+  public TranslationOptions (Translator.Algorithm algorithm, boolean rewrite,
+                             boolean bisim, boolean fairSim, boolean debug) {
+    this (algorithm, ExpansionOrder.DEPTH_FIRST, rewrite, bisim, fairSim,
+          debug);
+  }
+
+  /**
+   * @param algorithm tableau construction to use
+   * @param expansionOrder order of tableau node expansion
+   * @param rewrite apply {@link Rewriter} before translating
+   * @param bisim apply {@link gov.nasa.ltl.graph.Simplify}
+   * @param fairSim apply {@link gov.nasa.ltl.graph.SFSReduction}
+   * @param debug print the automaton size after every step
+   */
+  public TranslationOptions (Translator.Algorithm algorithm,
+                             ExpansionOrder expansionOrder, boolean rewrite,
+                             boolean bisim, boolean fairSim, boolean debug) {
+    this (algorithm, expansionOrder, rewrite, bisim, fairSim, debug,
+          0, 0, 0, false);
+  }
+
+  private TranslationOptions (Translator.Algorithm algorithm,
+                              ExpansionOrder expansionOrder, boolean rewrite,
+                              boolean bisim, boolean fairSim, boolean debug,
+                              long timeoutMillis, int maxTableauNodes,
+                              int maxEdges, boolean partialResults) {
+    assert algorithm != null : "no algorithm given";
+    assert expansionOrder != null : "no expansion order given";
+    this.algorithm = algorithm;
+    this.expansionOrder = expansionOrder;
+    this.rewrite = rewrite;
+    this.bisim = bisim;
+    this.fairSim = fairSim;
+    this.debug = debug;
+    this.timeoutMillis = timeoutMillis;
+    this.maxTableauNodes = maxTableauNodes;
+    this.maxEdges = maxEdges;
+    this.partialResults = partialResults;
+  }
+
+  public Translator.Algorithm getAlgorithm () {
+    return algorithm;
+  }
+
+  public ExpansionOrder getExpansionOrder () {
+    return expansionOrder;
+  }
+
+  public boolean isRewrite () {
+    return rewrite;
+  }
+
+  public boolean isBisim () {
+    return bisim;
+  }
+
+  public boolean isFairSim () {
+    return fairSim;
+  }
+
+  public boolean isDebug () {
+    return debug;
+  }
+
+  /**
+   * @return wall-clock time a translation may take, in milliseconds,
+   *    or 0 for no limit
+   */
+  public long getTimeoutMillis () {
+    return timeoutMillis;
+  }
+
+  /**
+   * @return number of tableau nodes a translation may create, or 0 for
+   *    no limit
+   */
+  public int getMaxTableauNodes () {
+    return maxTableauNodes;
+  }
+
+  /**
+   * @return number of edges the automata built during a translation may
+   *    have, or 0 for no limit
+   */
+  public int getMaxEdges () {
+    return maxEdges;
+  }
+
+  /**
+   * @return whether a translation which runs out of budget during the
+   *    optional reductions returns the automaton of the last step that
+   *    was completed, rather than failing
+   */
+  public boolean isPartialResults () {
+    return partialResults;
+  }
+
+  /**
+   * Starts the budget of a translation with these options in the
+   * current thread.
+   * @return budget with these options’ limits
+   */
+  public Budget startBudget () {
+    return Budget.start (timeoutMillis, maxTableauNodes, maxEdges);
+  }
+
+  @Override
+  public boolean equals (Object obj) {
+    if (!(obj instanceof TranslationOptions))
+      return false;
+    TranslationOptions o = (TranslationOptions)obj;
+    return algorithm == o.algorithm && expansionOrder == o.expansionOrder &&
+      rewrite == o.rewrite && bisim == o.bisim && fairSim == o.fairSim &&
+      debug == o.debug && timeoutMillis == o.timeoutMillis &&
+      maxTableauNodes == o.maxTableauNodes && maxEdges == o.maxEdges &&
+      partialResults == o.partialResults;
+  }
+
+  @Override
+  public int hashCode () {
+    int h = algorithm.hashCode () * 31 + expansionOrder.hashCode ();
+    h = h * 31 + (rewrite ? 1 : 0);
+    h = h * 31 + (bisim ? 1 : 0);
+    h = h * 31 + (fairSim ? 1 : 0);
+    h = h * 31 + (debug ? 1 : 0);
+    h = h * 31 + (int)(timeoutMillis ^ (timeoutMillis >>> 32));
+    h = h * 31 + maxTableauNodes;
+    h = h * 31 + maxEdges;
+    return h * 31 + (partialResults ? 1 : 0);
+  }
+
+  /**
+   * @param alg
+   * @return copy of these options using the given algorithm
+   */
+  public TranslationOptions withAlgorithm (Translator.Algorithm alg) {
+    return new TranslationOptions (alg, expansionOrder, rewrite, bisim,
+                                   fairSim, debug, timeoutMillis,
+                                   maxTableauNodes, maxEdges, partialResults);
+  }
+
+  /**
+   * @param order
+   * @return copy of these options using the given expansion order
+   */
+  public TranslationOptions withExpansionOrder (ExpansionOrder order) {
+    return new TranslationOptions (algorithm, order, rewrite, bisim,
+                                   fairSim, debug, timeoutMillis,
+                                   maxTableauNodes, maxEdges, partialResults);
+  }
+
+  /**
+   * @param d
+   * @return copy of these options with debugging output on or off
+   */
+  public TranslationOptions withDebug (boolean d) {
+    return new TranslationOptions (algorithm, expansionOrder, rewrite, bisim,
+                                   fairSim, d, timeoutMillis,
+                                   maxTableauNodes, maxEdges, partialResults);
+  }
+
+  /**
+   * @param millis wall-clock time allowed, or 0 for no limit
+   * @param tableauNodes tableau nodes allowed, or 0 for no limit
+   * @param edges edges allowed in any intermediate automaton, or 0 for
+   *    no limit
+   * @return copy of these options with the given limits
+   */
+  public TranslationOptions withBudget (long millis, int tableauNodes,
+                                        int edges) {
+    return new TranslationOptions (algorithm, expansionOrder, rewrite, bisim,
+                                   fairSim, debug, millis, tableauNodes,
+                                   edges, partialResults);
+  }
+
+  /**
+   * @param p
+   * @return copy of these options which do or do not accept a partly
+   *    reduced automaton when the budget runs out
+   */
+  public TranslationOptions withPartialResults (boolean p) {
+    return new TranslationOptions (algorithm, expansionOrder, rewrite, bisim,
+                                   fairSim, debug, timeoutMillis,
+                                   maxTableauNodes, maxEdges, p);
+  }
+}
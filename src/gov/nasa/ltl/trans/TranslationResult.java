@@ -0,0 +1,73 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.ltl.trans;
+
+import gov.nasa.ltl.graph.Graph;
+
+/**
+ * Outcome of translating one formula of a batch: either an automaton
+ * or the error which prevented it, and the time it took.
+ */
+public final class TranslationResult<PropT> {
+  private final Formula<PropT> formula;
+  private final Graph<PropT> graph;
+  private final Throwable error;
+  private final long nanos;
+
+  TranslationResult (Formula<PropT> formula, Graph<PropT> graph,
+                     Throwable error, long nanos) {
+    assert (graph == null) != (error == null) : "need graph or error";
+    this.formula = formula;
+    this.graph = graph;
+    this.error = error;
+    this.nanos = nanos;
+  }
+
+  /**
+   * @return the formula as it was passed in
+   */
+  public Formula<PropT> getFormula () {
+    return formula;
+  }
+
+  /**
+   * @return automaton, or null if the translation failed
+   */
+  public Graph<PropT> getGraph () {
+    return graph;
+  }
+
+  /**
+   * @return what the translation failed with, or null if it succeeded
+   */
+  public Throwable getError () {
+    return error;
+  }
+
+  public boolean isSuccess () {
+    return error == null;
+  }
+
+  /**
+   * @return wall-clock time taken by the translation, in nanoseconds
+   */
+  public long getNanos () {
+    return nanos;
+  }
+}
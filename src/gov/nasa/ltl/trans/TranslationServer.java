@@ -0,0 +1,328 @@
+//
+// Copyright (C) 2006 United States Government as represented by the
+// Administrator of the National Aeronautics and Space Administration
+// (NASA).  All Rights Reserved.
+//
+// This software is distributed under the NASA Open Source Agreement
+// (NOSA), version 1.3.  The NOSA has been approved by the Open Source
+// Initiative.  See the file NOSA-1.3-JPF at the top of the distribution
+// directory tree for the complete NOSA document.
+//
+// THE SUBJECT SOFTWARE IS PROVIDED "AS IS" WITHOUT ANY WARRANTY OF ANY
+// KIND, EITHER EXPRESSED, IMPLIED, OR STATUTORY, INCLUDING, BUT NOT
+// LIMITED TO, ANY WARRANTY THAT THE SUBJECT SOFTWARE WILL CONFORM TO
+// SPECIFICATIONS, ANY IMPLIED WARRANTIES OF MERCHANTABILITY, FITNESS FOR
+// A PARTICULAR PURPOSE, OR FREEDOM FROM INFRINGEMENT, ANY WARRANTY THAT
+// THE SUBJECT SOFTWARE WILL BE ERROR FREE, OR ANY WARRANTY THAT
+// DOCUMENTATION, IF PROVIDED, WILL CONFORM TO THE SUBJECT SOFTWARE.
+//
+package gov.nasa.ltl.trans;
+
+import gov.nasa.ltl.graph.Graph;
+import gov.nasa.ltl.graphio.Writer;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Translates formulae for clients on a local socket, so that they do
+ * not pay for starting and warming up a JVM each time.
+ *
+ * A client sends requests, one per line, and gets one response per
+ * request, in order. A request consists of options, as for
+ * {@link LTL2Buchi#main(String[])}, followed by the formula:
+ * <pre>
+ *   [-o fsp|promela|xml|sm] [-a ltl2buchi|ltl2aut] [-norw] [-nobisim]
+ *   [-nofsim] [-t milliseconds] [--] formula
+ * </pre>
+ * The response is either a line "ok N" followed by N bytes holding the
+ * automaton in the chosen format, or a single line "error message".
+ * The message "error busy" means the request was turned away because
+ * the server is at capacity, and may be retried.
+ *
+ * Each client is served by a thread of a bounded pool; clients beyond
+ * that are sent "error busy" and disconnected. The number of
+ * translations running at the same time is bounded as well. Requests
+ * for the same formula, in the same format and with the same options,
+ * which arrive while it is being translated share that translation
+ * rather than being counted against the bound.
+ */
+public class TranslationServer {
+  /** Requests longer than this many characters are refused. */
+  public static final int MAX_REQUEST = 1 << 20;
+
+  private static final Charset UTF8 = Charset.forName ("UTF-8");
+  private static final byte[] BUSY = "error busy\n".getBytes (UTF8);
+
+  private final ServerSocketChannel server;
+  private final ThreadPoolExecutor clients;
+  private final Semaphore translations;
+  private final ConcurrentHashMap<List<Object>, CompletableFuture<byte[]>> inFlight =
+    new ConcurrentHashMap<List<Object>, CompletableFuture<byte[]>> ();
+
+  /**
+   * Opens a server socket.
+   * @param address {@link UnixDomainSocketAddress} or
+   *    {@link java.net.InetSocketAddress} to listen on
+   * @param maxClients number of clients served at the same time
+   * @param maxTranslations number of translations run at the same time
+   * @throws IOException
+   */
+  public TranslationServer (SocketAddress address, int maxClients,
+                            int maxTranslations) throws IOException {
+    assert maxClients > 0 && maxTranslations > 0 : "no capacity";
+    if (address instanceof UnixDomainSocketAddress) {
+      server = ServerSocketChannel.open (StandardProtocolFamily.UNIX);
+    } else {
+      server = ServerSocketChannel.open ();
+    }
+    server.bind (address);
+    clients = new ThreadPoolExecutor (maxClients, maxClients, 60,
+                                      TimeUnit.SECONDS,
+                                      new SynchronousQueue<Runnable> ());
+    clients.allowCoreThreadTimeOut (true);
+    translations = new Semaphore (maxTranslations);
+  }
+
+  /**
+   * Accepts clients until {@link #close()} is called.
+   * @throws IOException
+   */
+  public void serve () throws IOException {
+    try {
+      while (true) {
+        final SocketChannel ch = server.accept ();
+        try {
+          clients.execute (new Runnable () {
+            public void run () {
+              serve (ch);
+            }
+          });
+        } catch (RejectedExecutionException e) {
+          refuse (ch);
+        }
+      }
+    } catch (ClosedChannelException e) {
+      // closed by close ()
+    } finally {
+      clients.shutdownNow ();
+    }
+  }
+
+  /**
+   * Stops accepting clients. Clients being served are disconnected
+   * after their current request.
+   * @throws IOException
+   */
+  public void close () throws IOException {
+    server.close ();
+    clients.shutdownNow ();
+  }
+
+  private void refuse (SocketChannel ch) {
+    try {
+      Channels.newOutputStream (ch).write (BUSY);
+    } catch (IOException e) {
+      // the client is gone anyway
+    }
+    closeQuietly (ch);
+  }
+
+  private void serve (SocketChannel ch) {
+    try {
+      BufferedReader in = new BufferedReader (
+        new InputStreamReader (Channels.newInputStream (ch), UTF8));
+      OutputStream out = Channels.newOutputStream (ch);
+      StringBuilder line = new StringBuilder ();
+      while (!Thread.currentThread ().isInterrupted () &&
+             readLine (in, line)) {
+        if (line.length () > MAX_REQUEST) {
+          out.write ("error request too long\n".getBytes (UTF8));
+          break;
+        }
+        if (line.toString ().trim ().length () > 0) {
+          out.write (respond (line.toString ()));
+        }
+      }
+    } catch (IOException e) {
+      // the client went away
+    } finally {
+      closeQuietly (ch);
+    }
+  }
+
+  /**
+   * Reads a line, but no more than {@link #MAX_REQUEST} characters of it.
+   * @return false at the end of the input
+   */
+  private static boolean readLine (BufferedReader in, StringBuilder line)
+      throws IOException {
+    line.setLength (0);
+    int c;
+    while ((c = in.read ()) >= 0 && c != '\n') {
+      if (c != '\r')
+        line.append ((char)c);
+      if (line.length () > MAX_REQUEST)
+        return true;
+    }
+    return c >= 0 || line.length () > 0;
+  }
+
+  private static void closeQuietly (SocketChannel ch) {
+    try {
+      ch.close ();
+    } catch (IOException e) {
+      // nothing to be done
+    }
+  }
+
+  /**
+   * @param request
+   * @return the complete response to the request
+   */
+  private byte[] respond (String request) {
+    String[] words = request.trim ().split ("\\s+");
+    Writer.Format format = Writer.Format.FSP;
+    Translator.Algorithm algorithm = Translator.Algorithm.LTL2BUCHI;
+    boolean rewrite = true, bisim = true, fairSim = true;
+    long timeout = 0;
+    int i = 0;
+
+    for (; i < words.length && words[i].startsWith ("-"); i++) {
+      String w = words[i];
+      if (w.equals ("--")) {
+        i++;
+        break;
+      } else if (w.equals ("-norw")) {
+        rewrite = false;
+      } else if (w.equals ("-nobisim")) {
+        bisim = false;
+      } else if (w.equals ("-nofsim")) {
+        fairSim = false;
+      } else if (i + 1 == words.length) {
+        return error ("missing value for " + w);
+      } else if (w.equals ("-o")) {
+        format = format (words[++i]);
+        if (format == null)
+          return error ("unknown format " + words[i]);
+      } else if (w.equals ("-a")) {
+        if (words[++i].equals ("ltl2buchi")) {
+          algorithm = Translator.Algorithm.LTL2BUCHI;
+        } else if (words[i].equals ("ltl2aut")) {
+          algorithm = Translator.Algorithm.LTL2AUT;
+        } else {
+          return error ("unknown algorithm " + words[i]);
+        }
+      } else if (w.equals ("-t")) {
+        try {
+          timeout = Long.parseLong (words[++i]);
+        } catch (NumberFormatException e) {
+          timeout = -1;
+        }
+        if (timeout < 0)
+          return error ("bad timeout " + words[i]);
+      } else {
+        return error ("unknown option " + w);
+      }
+    }
+    StringBuilder formula = new StringBuilder ();
+    for (; i < words.length; i++)
+      formula.append (words[i]).append (' ');
+
+    final Formula<String> f;
+    try {
+      f = Parser.parse (formula.toString (), new FormulaFactory ());
+    } catch (ParseErrorException e) {
+      return error (e.getMessage ());
+    }
+    TranslationOptions options =
+      new TranslationOptions (algorithm, rewrite, bisim, fairSim, false)
+        .withBudget (timeout, 0, 0);
+    // not toString (), which prints some atoms like other formulae
+    List<Object> key = Arrays.<Object>asList (f.toKey (), options, format);
+
+    CompletableFuture<byte[]> mine = new CompletableFuture<byte[]> ();
+    CompletableFuture<byte[]> running = inFlight.putIfAbsent (key, mine);
+    if (running != null)
+      return await (running);
+    if (!translations.tryAcquire ()) {
+      inFlight.remove (key, mine);
+      mine.complete (BUSY);
+      return BUSY;
+    }
+    try {
+      mine.complete (translate (f, options, format));
+    } catch (Throwable e) {
+      mine.complete (error (e.toString ()));
+    } finally {
+      translations.release ();
+      inFlight.remove (key, mine);
+    }
+    return mine.getNow (null);
+  }
+
+  private static byte[] translate (Formula<String> f,
+                                   TranslationOptions options,
+                                   Writer.Format format) {
+    Graph<String> g = LTL2Buchi.translate (f, options);
+    ByteArrayOutputStream text = new ByteArrayOutputStream ();
+    PrintStream out = new PrintStream (text, false);
+    Writer.<String>getWriter (format, out).write (g);
+    out.flush ();
+    byte[] head = ("ok " + text.size () + "\n").getBytes (UTF8);
+    byte[] response = Arrays.copyOf (head, head.length + text.size ());
+    System.arraycopy (text.toByteArray (), 0, response, head.length,
+                      text.size ());
+    return response;
+  }
+
+  private static byte[] await (CompletableFuture<byte[]> f) {
+    try {
+      return f.get ();
+    } catch (InterruptedException e) {
+      Thread.currentThread ().interrupt ();
+      return error ("interrupted");
+    } catch (ExecutionException e) {
+      return error (e.getCause ().toString ());
+    }
+  }
+
+  private static byte[] error (String message) {
+    String m = String.valueOf (message).replace ('\n', ' ');
+    return ("error " + m + "\n").getBytes (UTF8);
+  }
+
+  private static Writer.Format format (String name) {
+    if (name.equals ("fsp"))
+      return Writer.Format.FSP;
+    if (name.equals ("promela"))
+      return Writer.Format.SPIN;
+    if (name.equals ("xml"))
+      return Writer.Format.XML;
+    if (name.equals ("sm"))
+      return Writer.Format.SM;
+    return null;
+  }
+}
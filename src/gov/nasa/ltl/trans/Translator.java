@@ -26,30 +26,96 @@ import gov.nasa.ltl.graph.*;
  */
 public class Translator {
   public static enum Algorithm { LTL2AUT, LTL2BUCHI };
-  private static Algorithm algorithm = Algorithm.LTL2BUCHI; // by default 
+  private static volatile Algorithm algorithm = Algorithm.LTL2BUCHI; // by default 
 
+  /**
+   * Gets the algorithm used by the translation methods which take no
+   * {@link TranslationOptions}.
+   * @deprecated pass {@link TranslationOptions} instead
+   */
+  @Deprecated
   public static Algorithm getAlgorithm () {
     return algorithm;
   }
 
+  /**
+   * Sets the algorithm used by the translation methods which take no
+   * {@link TranslationOptions}. This affects every thread.
+   * @deprecated pass {@link TranslationOptions} instead
+   */
+  @Deprecated
   public static void setAlgorithm (Algorithm alg) {
     algorithm = alg;
   }
 
   public static Graph<String> translate (String formula) {
+    return translate(formula, new FormulaFactory());
+  }
+
+  /**
+   * Parses a formula with the given factory and translates it.
+   * @param formula formula text
+   * @param factory factory used for the formula and its subformulae
+   * @return generalised Büchi automaton
+   */
+  public static Graph<String> translate (String formula, FormulaFactory factory) {
     try {
-      Formula<String> ltl = Parser.parse(formula);
+      Formula<String> ltl = Parser.parse(formula, factory);
       return translate(ltl);
     } catch (ParseErrorException e) {
       throw new LTLErrorException("parse error: " + e.getMessage());
     }
   }
   
+  /**
+   * Translates a formula with the algorithm set by
+   * {@link #setAlgorithm(Algorithm)}.
+   * @param formula
+   * @return generalised Büchi automaton
+   */
   public static <PropT> Graph<PropT> translate(Formula<PropT> formula) {
+    return translate(formula, TranslationOptions.DEFAULT.withAlgorithm(algorithm));
+  }
+
+  /**
+   * Translates a formula. Any formulae needed during the translation
+   * are obtained from the formula’s own {@link FormulaFactory}. Of the
+   * options, only the algorithm matters at this stage.
+   * @param formula
+   * @param options
+   * @return generalised Büchi automaton
+   */
+  public static <PropT> Graph<PropT> translate(Formula<PropT> formula,
+                                               TranslationOptions options) {
+    return translate(formula, options, options.startBudget ());
+  }
+
+  /**
+   * Translates a formula within a budget which has already been
+   * started, e. g. by a caller which goes on to reduce the result.
+   * @param formula
+   * @param options
+   * @param budget checked before every tableau node is expanded, and
+   *    against the edges of the automaton as they are added
+   * @return generalised Büchi automaton
+   * @throws BudgetExceededException
+   */
+  public static <PropT> Graph<PropT> translate(Formula<PropT> formula,
+                                               TranslationOptions options,
+                                               Budget budget) {
     Pool pool = new Pool ();
     Node<PropT> init = Node.createInitial (formula, pool);
-    Automaton<PropT> a = new Automaton<PropT> (pool);
+    Automaton<PropT> a = new Automaton<PropT> (pool, options, budget);
     State<PropT>[] states = init.expand (a).structForRuntAnalysis ();
+    if (options.isDebug ()) {
+      System.out.println ("\nTableau expanded " +
+          options.getExpansionOrder () + ": " + pool.getIdCount () +
+          " nodes" + (a.isParallel () ? "" :
+            ", at most " + a.getMaxPending () + " pending"));
+      ImplicationMemo<PropT> memo = init.getClosure ().getImplicationMemo ();
+      System.out.println ("Implication checks: " + memo.getHits () +
+          " remembered, " + memo.getMisses () + " computed");
+    }
     return a.SMoutput (states);
   }
 }